@@ -1,10 +1,35 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * A collection of elements, stored in a tree in order.
  * 
+ * A tree can be created in self-balancing mode, in which it is kept as an AVL
+ * tree: after every add or remove, any node whose subtrees differ in height by
+ * more than one is fixed with rotations. The depth of a balanced tree stays
+ * O(log n) whatever order elements are added in, so sorted input no longer
+ * turns it into a linked list. Without it, sorted input still makes every
+ * change cost O(n), so use balanced mode for such input; add and remove walk
+ * the tree with loops, though, so even a tree that is one long path cannot
+ * overflow the call stack.
+ * 
+ * The tree can be walked in in-order, pre-order or post-order with iterators
+ * that keep their own stack, and streamed with stream() or parallelStream().
+ * Ordered queries (floor, ceiling, range and so on) only follow one path down
+ * the tree, so they cost O(depth) plus the number of elements returned.
+ * 
  * @author Chad Hogg
  * @param <E> The type of element stored in the tree.
  */
-public class BinarySearchTree<E extends Comparable<E>> {
+public class BinarySearchTree<E extends Comparable<E>> implements Iterable<E> {
 
 	/**
 	 * A node in a binary tree.
@@ -20,6 +45,10 @@ public class BinarySearchTree<E extends Comparable<E>> {
 		public BTNode<E> left;
 		/** The right subtree of this node. */
 		public BTNode<E> right;
+		/** The number of nodes on the longest path from this node to a leaf. */
+		public int height;
+		/** The number of nodes in the subtree rooted at this node. */
+		public int size;
 
 		/**
 		 * Creates a new node.
@@ -32,6 +61,8 @@ public class BinarySearchTree<E extends Comparable<E>> {
 			this.data = data;
 			this.left = left;
 			this.right = right;
+			this.height = 1 + Math.max(left == null ? 0 : left.height, right == null ? 0 : right.height);
+			this.size = 1 + (left == null ? 0 : left.size) + (right == null ? 0 : right.size);
 		}
 	}
 
@@ -40,15 +71,40 @@ public class BinarySearchTree<E extends Comparable<E>> {
 	// value stored in X.
 	// For every node X, the value stored in all of X's right descendants is > the
 	// value stored in X.
+	// (In self-balancing mode a rotation can move a copy of X's value to its
+	// right, and bulkLoad and merge split runs of copies down the middle, so
+	// then it is only >= the value stored in X.)
+	// For every node X, X.height and X.size are correct.
 
 	/** The root of the entire tree (or null if empty). */
 	private BTNode<E> overallRoot;
+	/** Whether the tree rebalances itself after every change. */
+	private boolean selfBalancing;
 
 	/**
-	 * Initializes a new, empty tree.
+	 * Initializes a new, empty tree that does not rebalance itself.
 	 */
 	public BinarySearchTree() {
+		this(false);
+	}
+
+	/**
+	 * Initializes a new, empty tree.
+	 * 
+	 * @param selfBalancing True to keep the tree balanced as an AVL tree.
+	 */
+	public BinarySearchTree(boolean selfBalancing) {
 		overallRoot = null;
+		this.selfBalancing = selfBalancing;
+	}
+
+	/**
+	 * Checks whether this tree rebalances itself.
+	 * 
+	 * @return True if the tree is kept balanced.
+	 */
+	public boolean isSelfBalancing() {
+		return selfBalancing;
 	}
 
 	/**
@@ -59,42 +115,43 @@ public class BinarySearchTree<E extends Comparable<E>> {
 	 *                to.
 	 */
 	public void add(E value) {
-		add(value, overallRoot);
+		// a loop rather than recursion, so a tall tree cannot overflow the stack
+		@SuppressWarnings("unchecked")
+		BTNode<E>[] path = (BTNode<E>[]) new BTNode<?>[height(overallRoot)];
+		boolean[] wentLeft = new boolean[path.length];
+		int length = 0;
+		BTNode<E> current = overallRoot;
+		while (current != null) {
+			path[length] = current;
+			// duplicates go to the left
+			wentLeft[length] = value.compareTo(current.data) <= 0;
+			current = wentLeft[length] ? current.left : current.right;
+			length++;
+		}
+		rebuildPath(path, wentLeft, length, new BTNode<E>(value, null, null));
 	}
 
 	/**
-	 * Adds a new element to a subtree, then returns the (possibly new) root of that
-	 * subtree.
+	 * Puts a new subtree where the last step of a path from the root led, then
+	 * fixes every node on the path from the bottom up.
 	 * 
-	 * @param value       The element to add.
-	 * @param subtreeRoot The root of a subtree within this tree (could be null).
-	 * @return The new root of that subtree (a new node if subtreeRoot was null,
-	 *         otherwise unchanged).
-	 * @postcondition The subtree contains one more copy of the element than it used
-	 *                to.
+	 * @param path     The nodes from the root down.
+	 * @param wentLeft Whether the path went left (or right) from each node.
+	 * @param length   The number of nodes on the path.
+	 * @param subtree  The subtree to hang from the last node (could be null).
+	 * @postcondition Every node on the path has the correct height and size, and
+	 *                in self-balancing mode is balanced.
 	 */
-	private BTNode<E> add(E value, BTNode<E> subtreeRoot) {
-		// base case
-		if (size() == 0) {
-			BTNode<E> newNode = new BTNode<E>(value, null, null);
-			overallRoot = newNode;
-			return overallRoot;
-
-		} else if (value.compareTo(subtreeRoot.data) <= 0) {
-			if (subtreeRoot.left == null) {
-				BTNode<E> newNode = new BTNode<E>(value, null, null);
-				subtreeRoot.left = newNode;
-				return subtreeRoot.left;
+	private void rebuildPath(BTNode<E>[] path, boolean[] wentLeft, int length, BTNode<E> subtree) {
+		for (int i = length - 1; i >= 0; i--) {
+			if (wentLeft[i]) {
+				path[i].left = subtree;
 			} else {
-				return add(value, subtreeRoot.left);
+				path[i].right = subtree;
 			}
-		} else if (subtreeRoot.right == null) {
-			BTNode<E> newNode = new BTNode<E>(value, null, null);
-			subtreeRoot.right = newNode;
-			return subtreeRoot.right;
-		} else {
-			return add(value, subtreeRoot.right);
+			subtree = rebalance(path[i]);
 		}
+		overallRoot = subtree;
 	}
 
 	/**
@@ -104,107 +161,173 @@ public class BinarySearchTree<E extends Comparable<E>> {
 	 * @return True if the tree contains at least one copy of the element, or false.
 	 */
 	public boolean contains(E value) {
-		return contains(value, overallRoot);
+		// a loop rather than recursion, so a tall tree cannot overflow the stack
+		BTNode<E> current = overallRoot;
+		while (current != null) {
+			int comparison = value.compareTo(current.data);
+			if (comparison == 0) {
+				return true;
+			} else if (comparison < 0) {
+				current = current.left;
+			} else {
+				current = current.right;
+			}
+		}
+		return false;
 	}
 
 	/**
-	 * Checks whether or not a subtree contains an element.
+	 * Removes one copy of an element from the tree, if at least one exists.
 	 * 
-	 * @param value       The element to look for.
-	 * @param subtreeRoot The root of a subtree within this tree (could be null).
-	 * @return True if that subtree contains at least one copy of the element, or
-	 *         false.
+	 * @param value The element to remove.
+	 * @return True if a copy was removed, or false if there was none.
+	 * @postcondition If the tree contained at least one copy of the element, it has
+	 *                one fewer.
 	 */
-	private boolean contains(E value, BTNode<E> subtreeRoot) {
-		if (subtreeRoot == null) {
+	public boolean remove(E value) {
+		// a loop rather than recursion, so a tall tree cannot overflow the stack
+		@SuppressWarnings("unchecked")
+		BTNode<E>[] path = (BTNode<E>[]) new BTNode<?>[height(overallRoot)];
+		boolean[] wentLeft = new boolean[path.length];
+		int length = 0;
+		BTNode<E> current = overallRoot;
+		while (current != null) {
+			int comparison = value.compareTo(current.data);
+			if (comparison == 0) {
+				break;
+			}
+			path[length] = current;
+			wentLeft[length] = comparison < 0;
+			current = wentLeft[length] ? current.left : current.right;
+			length++;
+		}
+		if (current == null) {
 			return false;
 		}
-		if (subtreeRoot.data.compareTo(value) == 0) {
-			return true;
-		} else if (subtreeRoot.data.compareTo(value) < 0) {
-			return contains(value, subtreeRoot.right);
-		} else if (subtreeRoot.data.compareTo(value) > 0) {
-			return contains(value, subtreeRoot.left);
+
+		BTNode<E> replacement;
+		if (current.right == null) {
+			// no children, or only a left child
+			replacement = current.left;
+		} else if (current.left == null) {
+			// only a right child
+			replacement = current.right;
 		} else {
-			return false;
+			// two children: take the value of the largest node on the left (so
+			// duplicates stay left) and unlink that node instead
+			path[length] = current;
+			wentLeft[length] = true;
+			length++;
+			BTNode<E> largest = current.left;
+			while (largest.right != null) {
+				path[length] = largest;
+				wentLeft[length] = false;
+				length++;
+				largest = largest.right;
+			}
+			current.data = largest.data;
+			replacement = largest.left;
 		}
+		rebuildPath(path, wentLeft, length, replacement);
+		return true;
 	}
 
 	/**
-	 * Removes one copy of an element from the tree, if at least one exists.
+	 * Finds the largest value in a subtree.
 	 * 
-	 * @param value The element to remove.
-	 * @postcondition If the tree contained at least one copy of the element, it has
-	 *                one fewer.
+	 * @param subtreeRoot The root of the subtree whose largest value is desired.
+	 * @return The largest element in that subtree.
 	 */
-	public void remove(E value) {
-		overallRoot = remove(value, overallRoot);
+	private E findLargest(BTNode<E> subtreeRoot) {
+		while (subtreeRoot.right != null) {
+			subtreeRoot = subtreeRoot.right;
+		}
+		return subtreeRoot.data;
 	}
 
+	//// Methods for balancing ////
+
 	/**
-	 * Removes one copy of an element from a subtree, if at least one exists.
+	 * Gets the height of a subtree.
 	 * 
-	 * @param value       The element to remove.
-	 * @param subtreeRoot The root of a subtree in which the element should be
-	 *                    removed.
-	 * @return The new root of that subtree (unchanged, unless node was the one
-	 *         removed).
-	 * @postcondition If the subtree contained at least one copy of the element, it
-	 *                has one fewer.
+	 * @param subtreeRoot The root of the subtree (could be null).
+	 * @return The number of nodes on the longest path from the root to a leaf.
 	 */
-	private BTNode<E> remove(E value, BTNode<E> subtreeRoot) {
-		if (subtreeRoot == null) {
-			return null;
-		}
-		if (value.equals(subtreeRoot.data)) {
-			// if the node has no children...
-			if (subtreeRoot.left == null && subtreeRoot.right == null) {
-				return null;
-			}
-			// only has one child...
-			if (subtreeRoot.right == null) {
-				return subtreeRoot.left;
-			}
+	private static int height(BTNode<?> subtreeRoot) {
+		return subtreeRoot == null ? 0 : subtreeRoot.height;
+	}
 
-			if (subtreeRoot.left == null) {
-				return subtreeRoot.right;
-			}
-			// if it has two children
-			// find value to replace
-			E largest = findLargest(subtreeRoot.right);
-			// replace
-			subtreeRoot.data = largest;
-			// delete from it's original spot
-			subtreeRoot.left = remove(largest, subtreeRoot.left);
-			return subtreeRoot;
+	/**
+	 * Recomputes the height and size of a node from those of its children.
+	 * 
+	 * @param node The node.
+	 * @postcondition node.height and node.size are correct.
+	 */
+	private static void update(BTNode<?> node) {
+		node.height = 1 + Math.max(height(node.left), height(node.right));
+		node.size = 1 + size(node.left) + size(node.right);
+	}
 
-		}
+	/**
+	 * Rotates a subtree to the right, so its left child becomes its root.
+	 * 
+	 * @param subtreeRoot The root of the subtree, which must have a left child.
+	 * @return The new root of the subtree.
+	 */
+	private BTNode<E> rotateRight(BTNode<E> subtreeRoot) {
+		BTNode<E> newRoot = subtreeRoot.left;
+		subtreeRoot.left = newRoot.right;
+		newRoot.right = subtreeRoot;
+		update(subtreeRoot);
+		update(newRoot);
+		return newRoot;
+	}
 
-		// traverse tree
-		if (value.compareTo(subtreeRoot.data) <= 0) {
-			subtreeRoot.left = remove(value, subtreeRoot.left);
-			return subtreeRoot;
-		} else {
-			subtreeRoot.right = remove(value, subtreeRoot.right);
-			return subtreeRoot;
-		}
+	/**
+	 * Rotates a subtree to the left, so its right child becomes its root.
+	 * 
+	 * @param subtreeRoot The root of the subtree, which must have a right child.
+	 * @return The new root of the subtree.
+	 */
+	private BTNode<E> rotateLeft(BTNode<E> subtreeRoot) {
+		BTNode<E> newRoot = subtreeRoot.right;
+		subtreeRoot.right = newRoot.left;
+		newRoot.left = subtreeRoot;
+		update(subtreeRoot);
+		update(newRoot);
+		return newRoot;
 	}
 
 	/**
-	 * Finds the largest value in a subtree.
+	 * Fixes the height and size of a subtree's root after one of its children
+	 * changed, and in self-balancing mode rotates the subtree if it became
+	 * unbalanced.
 	 * 
-	 * @param subtreeRoot The root of the subtree whose largest value is desired.
-	 * @return The largest element in that subtree.
+	 * @param subtreeRoot The root of a subtree whose children are balanced.
+	 * @return The new root of the subtree.
+	 * @postcondition In self-balancing mode, the subtrees of the returned root
+	 *                differ in height by at most one.
 	 */
-	private E findLargest(BTNode<E> subtreeRoot) {
-		if (subtreeRoot.right == null) {
-			if (subtreeRoot.left == null) {
-				return subtreeRoot.data;
-			} else {
-				return findLargest(subtreeRoot.left);
+	private BTNode<E> rebalance(BTNode<E> subtreeRoot) {
+		update(subtreeRoot);
+		if (!selfBalancing) {
+			return subtreeRoot;
+		}
+		int balance = height(subtreeRoot.left) - height(subtreeRoot.right);
+		if (balance > 1) {
+			// left-right case: straighten it into a left-left case first
+			if (height(subtreeRoot.left.left) < height(subtreeRoot.left.right)) {
+				subtreeRoot.left = rotateLeft(subtreeRoot.left);
+			}
+			return rotateRight(subtreeRoot);
+		} else if (balance < -1) {
+			// right-left case: straighten it into a right-right case first
+			if (height(subtreeRoot.right.right) < height(subtreeRoot.right.left)) {
+				subtreeRoot.right = rotateRight(subtreeRoot.right);
 			}
+			return rotateLeft(subtreeRoot);
 		}
-		return null;
+		return subtreeRoot;
 	}
 
 	/**
@@ -219,15 +342,92 @@ public class BinarySearchTree<E extends Comparable<E>> {
 	/**
 	 * Gets the number of nodes in a subtree.
 	 * 
-	 * @param subtreeRoot The root of the subtree.
+	 * @param subtreeRoot The root of the subtree (could be null).
 	 * @return The number of nodes in that subtree.
 	 */
-	private int size(BTNode<E> subtreeRoot) {
-		if (subtreeRoot == null) {
+	private static int size(BTNode<?> subtreeRoot) {
+		return subtreeRoot == null ? 0 : subtreeRoot.size;
+	}
+
+	/**
+	 * Finds the element at a position in sorted order.
+	 * 
+	 * @param k The position, counting from 0 for the smallest element.
+	 * @return The k-th smallest element.
+	 * @throws IndexOutOfBoundsException If k is negative or not less than size().
+	 */
+	public E select(int k) {
+		if (k < 0 || k >= size()) {
+			throw new IndexOutOfBoundsException("No element at position " + k + ".");
+		}
+		BTNode<E> current = overallRoot;
+		while (true) {
+			int leftSize = size(current.left);
+			if (k < leftSize) {
+				current = current.left;
+			} else if (k == leftSize) {
+				return current.data;
+			} else {
+				k -= leftSize + 1;
+				current = current.right;
+			}
+		}
+	}
+
+	/**
+	 * Counts the elements smaller than a value.
+	 * 
+	 * @param value The value to compare with (which need not be in the tree).
+	 * @return The number of elements less than value, which is also the position
+	 *         select would give for its first copy.
+	 */
+	public int rank(E value) {
+		int count = 0;
+		BTNode<E> current = overallRoot;
+		while (current != null) {
+			if (value.compareTo(current.data) <= 0) {
+				current = current.left;
+			} else {
+				count += size(current.left) + 1;
+				current = current.right;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the elements no larger than a value.
+	 * 
+	 * @param value The value to compare with.
+	 * @return The number of elements less than or equal to value.
+	 */
+	private int countAtMost(E value) {
+		int count = 0;
+		BTNode<E> current = overallRoot;
+		while (current != null) {
+			if (value.compareTo(current.data) < 0) {
+				current = current.left;
+			} else {
+				count += size(current.left) + 1;
+				current = current.right;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the elements in a range.
+	 * 
+	 * @param lo The smallest value to count.
+	 * @param hi The largest value to count.
+	 * @return The number of elements between lo and hi, inclusive (0 if lo is
+	 *         greater than hi).
+	 */
+	public int countInRange(E lo, E hi) {
+		if (lo.compareTo(hi) > 0) {
 			return 0;
-		} else {
-			return 1 + size(subtreeRoot.left) + size(subtreeRoot.right);
 		}
+		return countAtMost(hi) - rank(lo);
 	}
 
 	/**
@@ -236,89 +436,716 @@ public class BinarySearchTree<E extends Comparable<E>> {
 	 * @return The length of the longest path from overall root to a leaf.
 	 */
 	public int depth() {
-		return depth(overallRoot);
+		return height(overallRoot) - 1;
 	}
 
 	/**
-	 * Gets the depth of a subtree.
+	 * Gets a String containing all of the elements in pre-order.
 	 * 
-	 * @param subtreeRoot The root of the subtree.
-	 * @return The length of the longest path from subtree's root to a leaf.
+	 * @return A String containing all of the elements in pre-order.
 	 */
-	private int depth(BTNode<E> subtreeRoot) {
-		if (subtreeRoot == null) {
-			return -1;
-		} else {
-			return 1 + Math.max(depth(subtreeRoot.left), depth(subtreeRoot.right));
+	public String getElementsPre() {
+		return elementsString(preOrderIterator());
+	}
+
+	/**
+	 * Gets a String containing all of the elements in post-order.
+	 * 
+	 * @return A String containing all of the elements in post-order.
+	 */
+	public String getElementsPost() {
+		return elementsString(postOrderIterator());
+	}
+
+	/**
+	 * Gets a String containing all of the elements in in-order.
+	 * 
+	 * @return A String containing all of the elements in in-order.
+	 */
+	public String getElementsIn() {
+		return elementsString(iterator());
+	}
+
+	/**
+	 * Writes elements into one String, each followed by a space.
+	 * 
+	 * @param elements The elements, in the order they should appear.
+	 * @return A String containing all of the elements.
+	 */
+	private String elementsString(Iterator<E> elements) {
+		StringBuilder builder = new StringBuilder();
+		while (elements.hasNext()) {
+			builder.append(elements.next()).append(' ');
 		}
+		return builder.toString();
 	}
 
+	//// Methods for ordered navigation ////
+
 	/**
-	 * Gets a String containing all of the elements in pre-order.
+	 * Finds the smallest element.
 	 * 
-	 * @return A String containing all of the elements in pre-order.
+	 * @return The smallest element, or null if the tree is empty.
 	 */
-	public String getElementsPre() {
-		return getElementsPre(overallRoot);
+	public E min() {
+		if (overallRoot == null) {
+			return null;
+		}
+		BTNode<E> current = overallRoot;
+		while (current.left != null) {
+			current = current.left;
+		}
+		return current.data;
 	}
 
 	/**
-	 * Gets a String containing all of the elements of a subtree in pre-order.
+	 * Finds the largest element.
 	 * 
-	 * @param subtreeRoot The root of the subtree.
-	 * @return A String containing all of the elements of the subtree in pre-order.
+	 * @return The largest element, or null if the tree is empty.
 	 */
-	private String getElementsPre(BTNode<E> subtreeRoot) {
-		if (subtreeRoot == null) {
-			return "";
-		} else {
-			return subtreeRoot.data + " " + getElementsPre(subtreeRoot.left) + getElementsPre(subtreeRoot.right);
+	public E max() {
+		return overallRoot == null ? null : findLargest(overallRoot);
+	}
+
+	/**
+	 * Finds the largest element less than or equal to a value.
+	 * 
+	 * @param value The value to compare with (which need not be in the tree).
+	 * @return The largest element <= value, or null if there is none.
+	 */
+	public E floor(E value) {
+		E best = null;
+		BTNode<E> current = overallRoot;
+		while (current != null) {
+			if (current.data.compareTo(value) <= 0) {
+				best = current.data;
+				current = current.right;
+			} else {
+				current = current.left;
+			}
 		}
+		return best;
 	}
 
 	/**
-	 * Gets a String containing all of the elements in post-order.
+	 * Finds the largest element strictly less than a value.
 	 * 
-	 * @return A String containing all of the elements in post-order.
+	 * @param value The value to compare with (which need not be in the tree).
+	 * @return The largest element < value, or null if there is none.
 	 */
-	public String getElementsPost() {
-		return getElementsPost(overallRoot);
+	public E lower(E value) {
+		E best = null;
+		BTNode<E> current = overallRoot;
+		while (current != null) {
+			if (current.data.compareTo(value) < 0) {
+				best = current.data;
+				current = current.right;
+			} else {
+				current = current.left;
+			}
+		}
+		return best;
 	}
 
 	/**
-	 * Gets a String containing all of the elements of a subtree in post-order.
+	 * Finds the smallest element greater than or equal to a value.
 	 * 
-	 * @param subtreeRoot The root of the subtree.
-	 * @return A String containing all of the elements of the subtree in post-order.
+	 * @param value The value to compare with (which need not be in the tree).
+	 * @return The smallest element >= value, or null if there is none.
 	 */
-	private String getElementsPost(BTNode<E> subtreeRoot) {
-		if (subtreeRoot == null) {
-			return "";
-		} else {
-			return getElementsPost(subtreeRoot.left) + getElementsPost(subtreeRoot.right) + subtreeRoot.data + " ";
+	public E ceiling(E value) {
+		E best = null;
+		BTNode<E> current = overallRoot;
+		while (current != null) {
+			if (current.data.compareTo(value) >= 0) {
+				best = current.data;
+				current = current.left;
+			} else {
+				current = current.right;
+			}
 		}
+		return best;
 	}
 
 	/**
-	 * Gets a String containing all of the elements in in-order.
+	 * Finds the smallest element strictly greater than a value.
 	 * 
-	 * @return A String containing all of the elements in in-order.
+	 * @param value The value to compare with (which need not be in the tree).
+	 * @return The smallest element > value, or null if there is none.
 	 */
-	public String getElementsIn() {
-		return getElementsIn(overallRoot);
+	public E higher(E value) {
+		E best = null;
+		BTNode<E> current = overallRoot;
+		while (current != null) {
+			if (current.data.compareTo(value) > 0) {
+				best = current.data;
+				current = current.left;
+			} else {
+				current = current.right;
+			}
+		}
+		return best;
 	}
 
 	/**
-	 * Gets a String containing all of the elements of a subtree in in-order.
+	 * Gets an iterator over the elements in a range, from smallest to largest.
+	 * Subtrees outside the range are never visited, so walking k elements costs
+	 * O(depth + k). The tree must not be changed while the iterator is in use.
 	 * 
-	 * @param subtreeRoot The root of the subtree.
-	 * @return A String containing all of the elements of the subtree in in-order.
+	 * @param lo The smallest value to include.
+	 * @param hi The largest value to include.
+	 * @return An iterator over the elements between lo and hi, inclusive.
 	 */
-	private String getElementsIn(BTNode<E> subtreeRoot) {
-		if (subtreeRoot == null) {
-			return "";
-		} else {
-			return getElementsIn(subtreeRoot.left) + subtreeRoot.data + " " + getElementsIn(subtreeRoot.right);
+	public Iterator<E> range(E lo, E hi) {
+		return new RangeIterator(lo, hi);
+	}
+
+	/**
+	 * Takes an immutable snapshot of the tree, stored in one array in
+	 * breadth-first order so that searches do not chase pointers. Use it when
+	 * the tree is done changing and will be read many times.
+	 *
+	 * @return A snapshot of the current elements.
+	 */
+	public FrozenBinarySearchTree<E> freeze() {
+		return new FrozenBinarySearchTree<E>(this);
+	}
+
+	//// Methods for loading sorted elements ////
+
+	/**
+	 * Replaces the contents of the tree with sorted elements, building a
+	 * perfectly balanced tree in O(n) time.
+	 * 
+	 * @param sorted The elements, from smallest to largest.
+	 * @throws IllegalArgumentException If the elements are not in order (checked
+	 *                                  with n - 1 comparisons).
+	 * @postcondition The tree contains exactly the given elements.
+	 */
+	public void bulkLoad(E[] sorted) {
+		bulkLoad(Arrays.asList(sorted));
+	}
+
+	/**
+	 * Replaces the contents of the tree with sorted elements, building a
+	 * perfectly balanced tree in O(n) time.
+	 * 
+	 * @param sorted The elements, from smallest to largest.
+	 * @throws IllegalArgumentException If the elements are not in order (checked
+	 *                                  with n - 1 comparisons).
+	 * @postcondition The tree contains exactly the given elements.
+	 */
+	public void bulkLoad(List<? extends E> sorted) {
+		checkSorted(sorted);
+		overallRoot = build(sorted.iterator(), sorted.size());
+	}
+
+	/**
+	 * Replaces the contents of the tree with sorted elements of unknown number,
+	 * building a perfectly balanced tree in O(n) time. The elements are
+	 * collected into a list first, since the shape of the tree depends on how
+	 * many there are.
+	 * 
+	 * @param sorted The elements, from smallest to largest.
+	 * @throws IllegalArgumentException If the elements are not in order (checked
+	 *                                  with n - 1 comparisons).
+	 * @postcondition The tree contains exactly the given elements.
+	 */
+	public void bulkLoad(Iterator<? extends E> sorted) {
+		bulkLoad(toList(sorted));
+	}
+
+	/**
+	 * Adds a sorted batch of elements in O(n + m) time, by merging them with the
+	 * tree's elements in order and rebuilding a perfectly balanced tree.
+	 * 
+	 * @param sorted The new elements, from smallest to largest.
+	 * @throws IllegalArgumentException If the new elements are not in order.
+	 * @postcondition The tree contains one more copy of each new element.
+	 */
+	public void merge(E[] sorted) {
+		merge(Arrays.asList(sorted));
+	}
+
+	/**
+	 * Adds a sorted batch of elements in O(n + m) time, by merging them with the
+	 * tree's elements in order and rebuilding a perfectly balanced tree.
+	 * 
+	 * @param sorted The new elements, from smallest to largest.
+	 * @throws IllegalArgumentException If the new elements are not in order.
+	 * @postcondition The tree contains one more copy of each new element.
+	 */
+	public void merge(List<? extends E> sorted) {
+		checkSorted(sorted);
+		List<E> merged = new ArrayList<E>(size() + sorted.size());
+		Iterator<E> existing = iterator();
+		Iterator<? extends E> added = sorted.iterator();
+		E nextExisting = existing.hasNext() ? existing.next() : null;
+		E nextAdded = added.hasNext() ? added.next() : null;
+		while (nextExisting != null && nextAdded != null) {
+			if (nextAdded.compareTo(nextExisting) < 0) {
+				merged.add(nextAdded);
+				nextAdded = added.hasNext() ? added.next() : null;
+			} else {
+				merged.add(nextExisting);
+				nextExisting = existing.hasNext() ? existing.next() : null;
+			}
+		}
+		// Whatever is left of either list is larger than everything merged so far
+		if (nextExisting != null) {
+			merged.add(nextExisting);
+			existing.forEachRemaining(merged::add);
+		}
+		if (nextAdded != null) {
+			merged.add(nextAdded);
+			added.forEachRemaining(merged::add);
+		}
+		overallRoot = build(merged.iterator(), merged.size());
+	}
+
+	/**
+	 * Adds a sorted batch of elements of unknown number in O(n + m) time.
+	 * 
+	 * @param sorted The new elements, from smallest to largest.
+	 * @throws IllegalArgumentException If the new elements are not in order.
+	 * @postcondition The tree contains one more copy of each new element.
+	 */
+	public void merge(Iterator<? extends E> sorted) {
+		merge(toList(sorted));
+	}
+
+	/**
+	 * Collects the rest of an iterator into a list.
+	 * 
+	 * @param elements The iterator.
+	 * @return A new list of the elements, in the same order.
+	 */
+	private List<E> toList(Iterator<? extends E> elements) {
+		List<E> list = new ArrayList<E>();
+		elements.forEachRemaining(list::add);
+		return list;
+	}
+
+	/**
+	 * Makes sure a list is in order.
+	 * 
+	 * @param sorted The list.
+	 * @throws IllegalArgumentException If some element is smaller than the one
+	 *                                  before it.
+	 */
+	private void checkSorted(List<? extends E> sorted) {
+		E previous = null;
+		for (E element : sorted) {
+			if (previous != null && element.compareTo(previous) < 0) {
+				throw new IllegalArgumentException("Elements are not in sorted order.");
+			}
+			previous = element;
+		}
+	}
+
+	/**
+	 * Builds a perfectly balanced subtree from the next elements of an in-order
+	 * sequence. The left half is built first, so the elements are used in
+	 * exactly the order they arrive and nothing is compared.
+	 * 
+	 * @param sorted The elements, from smallest to largest.
+	 * @param count  The number of elements to take.
+	 * @return The root of the new subtree (or null if count is 0).
+	 */
+	private BTNode<E> build(Iterator<? extends E> sorted, int count) {
+		if (count == 0) {
+			return null;
+		}
+		int leftCount = count / 2;
+		BTNode<E> left = build(sorted, leftCount);
+		E middle = sorted.next();
+		BTNode<E> right = build(sorted, count - 1 - leftCount);
+		return new BTNode<E>(middle, left, right);
+	}
+
+	//// Methods for iterating ////
+
+	/**
+	 * Gets an iterator over the elements in in-order (from smallest to largest).
+	 * The tree must not be changed while the iterator is in use.
+	 * 
+	 * @return An iterator over the elements in in-order.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new InOrderIterator(0, size());
+	}
+
+	/**
+	 * Gets an iterator over the elements in pre-order. The tree must not be
+	 * changed while the iterator is in use.
+	 * 
+	 * @return An iterator over the elements in pre-order.
+	 */
+	public Iterator<E> preOrderIterator() {
+		return new PreOrderIterator();
+	}
+
+	/**
+	 * Gets an iterator over the elements in post-order. The tree must not be
+	 * changed while the iterator is in use.
+	 * 
+	 * @return An iterator over the elements in post-order.
+	 */
+	public Iterator<E> postOrderIterator() {
+		return new PostOrderIterator();
+	}
+
+	/**
+	 * Gets a Spliterator over the elements in in-order, which splits the tree by
+	 * position so each half has a known size.
+	 * 
+	 * @return A Spliterator over the elements in in-order.
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return new TreeSpliterator(0, size());
+	}
+
+	/**
+	 * Gets a sequential stream of the elements in in-order.
+	 * 
+	 * @return A stream of the elements.
+	 */
+	public Stream<E> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * Gets a parallel stream of the elements in in-order.
+	 * 
+	 * @return A possibly parallel stream of the elements.
+	 */
+	public Stream<E> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	/**
+	 * An iterator that walks the tree with its own stack instead of recursion,
+	 * so it uses O(depth) memory and cannot overflow the call stack.
+	 */
+	private abstract class TreeIterator implements Iterator<E> {
+
+		/** Nodes still to be visited, or whose subtrees are being visited. */
+		private BTNode<E>[] stack;
+		/** The number of nodes on the stack. */
+		private int top;
+
+		/**
+		 * Creates an iterator with an empty stack big enough for the whole depth
+		 * of the tree.
+		 */
+		@SuppressWarnings("unchecked")
+		TreeIterator() {
+			stack = (BTNode<E>[]) new BTNode<?>[height(overallRoot) + 1];
+		}
+
+		/**
+		 * Pushes a node onto the stack.
+		 * 
+		 * @param node The node.
+		 */
+		void push(BTNode<E> node) {
+			if (top == stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			stack[top++] = node;
+		}
+
+		/**
+		 * Pops the top node off the stack.
+		 * 
+		 * @return The node that was on top.
+		 */
+		BTNode<E> pop() {
+			BTNode<E> node = stack[--top];
+			stack[top] = null;
+			return node;
+		}
+
+		/**
+		 * Looks at the top node without popping it.
+		 * 
+		 * @return The node on top, or null if the stack is empty.
+		 */
+		BTNode<E> peek() {
+			return top == 0 ? null : stack[top - 1];
+		}
+
+		/**
+		 * Checks whether the stack is empty.
+		 * 
+		 * @return True if there are no nodes on the stack.
+		 */
+		boolean isEmpty() {
+			return top == 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !isEmpty();
+		}
+	}
+
+	/**
+	 * Visits elements from smallest to largest, starting at any position.
+	 */
+	private class InOrderIterator extends TreeIterator {
+
+		/** The number of elements left to return. */
+		private int remaining;
+
+		/**
+		 * Creates an iterator over a range of positions, finding the first one in
+		 * O(depth) time using the subtree sizes.
+		 * 
+		 * @param from The position of the first element to return.
+		 * @param to   One past the position of the last element to return.
+		 */
+		InOrderIterator(int from, int to) {
+			remaining = Math.max(0, to - from);
+			// The stack holds the nodes whose left subtree we went into, and the
+			// starting node itself on top
+			BTNode<E> current = overallRoot;
+			int k = from;
+			while (current != null && remaining > 0) {
+				int leftSize = size(current.left);
+				if (k < leftSize) {
+					push(current);
+					current = current.left;
+				} else if (k == leftSize) {
+					push(current);
+					current = null;
+				} else {
+					k -= leftSize + 1;
+					current = current.right;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return remaining > 0;
+		}
+
+		@Override
+		public E next() {
+			if (remaining == 0) {
+				throw new NoSuchElementException();
+			}
+			BTNode<E> node = pop();
+			for (BTNode<E> current = node.right; current != null; current = current.left) {
+				push(current);
+			}
+			remaining--;
+			return node.data;
+		}
+
+		/**
+		 * Gets the number of elements not yet returned.
+		 * 
+		 * @return The number of elements left.
+		 */
+		int remaining() {
+			return remaining;
+		}
+	}
+
+	/**
+	 * Visits the elements between two bounds in in-order, skipping subtrees
+	 * outside them.
+	 */
+	private class RangeIterator extends TreeIterator {
+
+		/** The largest value to return. */
+		private E hi;
+
+		/**
+		 * Creates an iterator positioned at the first element >= lo.
+		 * 
+		 * @param lo The smallest value to include.
+		 * @param hi The largest value to include.
+		 */
+		RangeIterator(E lo, E hi) {
+			this.hi = hi;
+			// Nodes below lo are passed by to the right, without their left subtrees
+			BTNode<E> current = overallRoot;
+			while (current != null) {
+				if (current.data.compareTo(lo) >= 0) {
+					push(current);
+					current = current.left;
+				} else {
+					current = current.right;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			// Everything after the top of the stack is at least as large as it
+			return !isEmpty() && peek().data.compareTo(hi) <= 0;
+		}
+
+		@Override
+		public E next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			BTNode<E> node = pop();
+			for (BTNode<E> current = node.right; current != null; current = current.left) {
+				push(current);
+			}
+			return node.data;
+		}
+	}
+
+	/**
+	 * Visits each node before its left subtree, then its right subtree.
+	 */
+	private class PreOrderIterator extends TreeIterator {
+
+		/**
+		 * Creates an iterator starting at the root.
+		 */
+		PreOrderIterator() {
+			if (overallRoot != null) {
+				push(overallRoot);
+			}
+		}
+
+		@Override
+		public E next() {
+			if (isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			BTNode<E> node = pop();
+			if (node.right != null) {
+				push(node.right);
+			}
+			if (node.left != null) {
+				push(node.left);
+			}
+			return node.data;
+		}
+	}
+
+	/**
+	 * Visits each node after its left subtree and its right subtree.
+	 */
+	private class PostOrderIterator extends TreeIterator {
+
+		/**
+		 * Creates an iterator starting at the first leaf in post-order.
+		 */
+		PostOrderIterator() {
+			descend(overallRoot);
+		}
+
+		/**
+		 * Pushes the path from a node down to the first node of its subtree to be
+		 * visited in post-order.
+		 * 
+		 * @param node The root of the subtree (could be null).
+		 */
+		private void descend(BTNode<E> node) {
+			while (node != null) {
+				push(node);
+				node = node.left != null ? node.left : node.right;
+			}
+		}
+
+		@Override
+		public E next() {
+			if (isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			BTNode<E> node = pop();
+			// Coming up from a left child, the right subtree is visited next
+			BTNode<E> parent = peek();
+			if (parent != null && parent.left == node) {
+				descend(parent.right);
+			}
+			return node.data;
+		}
+	}
+
+	/**
+	 * Splits the in-order positions of the tree in half until the pieces are
+	 * small, then walks each piece with an InOrderIterator.
+	 */
+	private class TreeSpliterator implements Spliterator<E> {
+
+		/** The position of the first element not yet returned or split off. */
+		private int from;
+		/** One past the position of the last element. */
+		private int to;
+		/** The walk through this piece, created on the first advance. */
+		private InOrderIterator walk;
+
+		/**
+		 * Creates a Spliterator over a range of positions.
+		 * 
+		 * @param from The position of the first element.
+		 * @param to   One past the position of the last element.
+		 */
+		TreeSpliterator(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			if (walk == null) {
+				walk = new InOrderIterator(from, to);
+			}
+			if (!walk.hasNext()) {
+				return false;
+			}
+			action.accept(walk.next());
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			if (walk == null) {
+				walk = new InOrderIterator(from, to);
+			}
+			while (walk.hasNext()) {
+				action.accept(walk.next());
+			}
+		}
+
+		@Override
+		public Spliterator<E> trySplit() {
+			// Once walking has started the position is only known to the stack
+			if (walk != null || to - from < 2) {
+				return null;
+			}
+			int middle = (from + to) >>> 1;
+			TreeSpliterator prefix = new TreeSpliterator(from, middle);
+			from = middle;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return walk == null ? to - from : walk.remaining();
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | SORTED | SIZED | SUBSIZED;
+		}
+
+		@Override
+		public Comparator<? super E> getComparator() {
+			// null means the elements' natural order
+			return null;
 		}
 	}
 
@@ -0,0 +1,264 @@
+/**
+ * A Life engine that packs 64 cells into each long and counts the neighbors of
+ * a whole word of cells at once.
+ *
+ * Bit j of a word holds column (64 * word + j) of its row. Each step first sums
+ * every cell with its left and right neighbors (a 2-bit count per column), then
+ * adds the three row sums together with bitwise adders to get a 4-bit count per
+ * cell. The birth and survival ranges are applied to those counts with masks,
+ * so the inner loop has no per-cell branches.
+ */
+public class BitPackedLife implements LifeEngine {
+
+	/** Number of cells packed into one word. */
+	private static final int BITS = 64;
+
+	/** The number of rows on the board. */
+	private int rows;
+	/** The number of columns on the board. */
+	private int columns;
+	/** The number of words used to store one row. */
+	private int words;
+	/** The current generation, row-major, words per row. */
+	private long[] cells;
+	/** The buffer the next generation is written into. */
+	private long[] next;
+	/** For each word of a row, the bits of the columns that may change. */
+	private long[] interior;
+	/** Low bits of the horizontal 3-cell sums for three consecutive rows. */
+	private long[][] sumLow;
+	/** High bits of the horizontal 3-cell sums for three consecutive rows. */
+	private long[][] sumHigh;
+	/** The neighbor counts that cause a birth. */
+	private int[] birthCounts;
+	/** The neighbor counts that let an organism survive. */
+	private int[] surviveCounts;
+	/** The number of generations computed so far. */
+	private long generation;
+
+	/**
+	 * Constructs an empty board.
+	 *
+	 * @param r    number of rows
+	 * @param c    number of columns
+	 * @param rule the birth and survival ranges
+	 */
+	public BitPackedLife(int r, int c, LifeRule rule) {
+		rows = r;
+		columns = c;
+		words = (c + BITS - 1) / BITS;
+		cells = new long[r * words];
+		next = new long[r * words];
+		sumLow = new long[3][words];
+		sumHigh = new long[3][words];
+		birthCounts = countsIn(rule.getBirthMask());
+		surviveCounts = countsIn(rule.getSurviveMask());
+
+		interior = new long[words];
+		for (int j = 1; j < c - 1; j++) {
+			interior[j / BITS] |= 1L << (j % BITS);
+		}
+	}
+
+	/**
+	 * Constructs a board holding a copy of an existing game board.
+	 *
+	 * @param gameBoard array of the game board, as made by Life.getMatrix
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param rule      the birth and survival ranges
+	 */
+	public BitPackedLife(boolean[][] gameBoard, int r, int c, LifeRule rule) {
+		this(r, c, rule);
+		for (int i = 0; i < r; i++) {
+			for (int j = 0; j < c; j++) {
+				if (gameBoard[i][j]) {
+					cells[i * words + j / BITS] |= 1L << (j % BITS);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Lists the counts whose bits are set in a mask.
+	 *
+	 * @param mask a set of neighbor counts, one bit per count
+	 * @return the counts in increasing order
+	 */
+	private static int[] countsIn(int mask) {
+		int[] counts = new int[Integer.bitCount(mask)];
+		int index = 0;
+		for (int k = 0; k <= LifeRule.MAX_COUNT; k++) {
+			if ((mask & (1 << k)) != 0) {
+				counts[index] = k;
+				index++;
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Sets the state of one cell.
+	 *
+	 * @param row    the row of the cell
+	 * @param column the column of the cell
+	 * @param alive  whether the cell should be occupied
+	 */
+	public void set(int row, int column, boolean alive) {
+		int index = row * words + column / BITS;
+		long bit = 1L << (column % BITS);
+		if (alive) {
+			cells[index] |= bit;
+		} else {
+			cells[index] &= ~bit;
+		}
+	}
+
+	@Override
+	public boolean isAlive(int row, int column) {
+		return (cells[row * words + column / BITS] & (1L << (column % BITS))) != 0;
+	}
+
+	@Override
+	public void step() {
+		if (rows >= 3) {
+			horizontalSums(0, 0);
+			horizontalSums(1, 1);
+			for (int i = 1; i < rows - 1; i++) {
+				horizontalSums(i + 1, (i + 1) % 3);
+				stepRow(i, (i - 1) % 3, i % 3, (i + 1) % 3);
+			}
+		}
+
+		// The outermost rows never change
+		System.arraycopy(cells, 0, next, 0, words);
+		if (rows > 1) {
+			System.arraycopy(cells, (rows - 1) * words, next, (rows - 1) * words, words);
+		}
+
+		long[] temp = cells;
+		cells = next;
+		next = temp;
+		generation++;
+	}
+
+	/**
+	 * Adds every cell of a row to its left and right neighbors.
+	 *
+	 * @param row  the row to sum
+	 * @param slot which of the three sum buffers to fill
+	 */
+	private void horizontalSums(int row, int slot) {
+		long[] low = sumLow[slot];
+		long[] high = sumHigh[slot];
+		int base = row * words;
+		for (int k = 0; k < words; k++) {
+			long middle = cells[base + k];
+			long before = k > 0 ? cells[base + k - 1] : 0;
+			long after = k < words - 1 ? cells[base + k + 1] : 0;
+			long left = (middle << 1) | (before >>> (BITS - 1));
+			long right = (middle >>> 1) | (after << (BITS - 1));
+
+			long partial = left ^ middle;
+			low[k] = partial ^ right;
+			high[k] = (left & middle) | (right & partial);
+		}
+	}
+
+	/**
+	 * Computes the next generation of one interior row.
+	 *
+	 * @param row   the row to compute
+	 * @param above the sum buffer holding the row above
+	 * @param same  the sum buffer holding this row
+	 * @param below the sum buffer holding the row below
+	 */
+	private void stepRow(int row, int above, int same, int below) {
+		long[] lowA = sumLow[above];
+		long[] highA = sumHigh[above];
+		long[] lowB = sumLow[same];
+		long[] highB = sumHigh[same];
+		long[] lowC = sumLow[below];
+		long[] highC = sumHigh[below];
+		int base = row * words;
+
+		for (int k = 0; k < words; k++) {
+			// ones place of the total, plus a carry into the twos place
+			long partial = lowA[k] ^ lowB[k];
+			long bit0 = partial ^ lowC[k];
+			long carry = (lowA[k] & lowB[k]) | (lowC[k] & partial);
+
+			// add the three twos-place bits and the carry
+			partial = highA[k] ^ highB[k];
+			long twos = partial ^ highC[k];
+			long fours = (highA[k] & highB[k]) | (highC[k] & partial);
+			long bit1 = twos ^ carry;
+			long extra = twos & carry;
+			long bit2 = fours ^ extra;
+			long bit3 = fours & extra;
+
+			long self = cells[base + k];
+			long born = ~self & matching(birthCounts, bit0, bit1, bit2, bit3);
+			long survived = self & matching(surviveCounts, bit0, bit1, bit2, bit3);
+			long mask = interior[k];
+			next[base + k] = ((born | survived) & mask) | (self & ~mask);
+		}
+	}
+
+	/**
+	 * Finds the cells whose neighbor count is one of a set of counts.
+	 *
+	 * @param counts the counts to look for
+	 * @param bit0   ones place of every cell's count
+	 * @param bit1   twos place of every cell's count
+	 * @param bit2   fours place of every cell's count
+	 * @param bit3   eights place of every cell's count
+	 * @return a word with a bit set for every cell whose count is in counts
+	 */
+	private static long matching(int[] counts, long bit0, long bit1, long bit2, long bit3) {
+		long result = 0;
+		for (int k : counts) {
+			long equal = (k & 1) != 0 ? bit0 : ~bit0;
+			equal &= (k & 2) != 0 ? bit1 : ~bit1;
+			equal &= (k & 4) != 0 ? bit2 : ~bit2;
+			equal &= (k & 8) != 0 ? bit3 : ~bit3;
+			result |= equal;
+		}
+		return result;
+	}
+
+	@Override
+	public int getRows() {
+		return rows;
+	}
+
+	@Override
+	public int getColumns() {
+		return columns;
+	}
+
+	@Override
+	public long getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public long getPopulation() {
+		long population = 0;
+		for (long word : cells) {
+			population += Long.bitCount(word);
+		}
+		return population;
+	}
+
+	@Override
+	public boolean[][] toMatrix() {
+		boolean[][] gameBoard = new boolean[rows][columns];
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				gameBoard[i][j] = isAlive(i, j);
+			}
+		}
+		return gameBoard;
+	}
+}
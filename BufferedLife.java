@@ -0,0 +1,367 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A Life engine that keeps two boards and swaps them every generation.
+ *
+ * Life.gameRound copies the whole board before each round so that updates do
+ * not disturb the neighbor counts. This engine reads from one buffer and writes
+ * the next generation into the other, so stepping allocates nothing.
+ *
+ * With more than one thread, the interior is split into bands of rows that are
+ * computed on a ForkJoinPool. Every band only reads the frozen current buffer
+ * and only writes its own rows of the next one, so the result is identical to
+ * the single-threaded step.
+ */
+public class BufferedLife implements LifeEngine {
+
+	/** How many bands each worker thread gets, so uneven bands even out. */
+	private static final int BANDS_PER_THREAD = 4;
+
+	/** The number of rows on the board. */
+	private int rows;
+	/** The number of columns on the board. */
+	private int columns;
+	/** The birth and survival ranges, compiled into a lookup table. */
+	private boolean[] table;
+	/** The current generation. */
+	private boolean[][] current;
+	/** The buffer the next generation is written into. */
+	private boolean[][] next;
+	/** The number of generations computed so far. */
+	private long generation;
+	/** The worker threads, or null when stepping on the calling thread. */
+	private ForkJoinPool pool;
+	/** The most rows a single band computes. */
+	private int bandRows;
+	/** Where per-generation metrics go, or null when they are not wanted. */
+	private LifeMetricsSink metrics;
+	/** The CycleDetector hash of each row, or null when hashes are not kept. */
+	private long[] rowHashes;
+
+	/**
+	 * Constructs a single-threaded engine holding a copy of an existing game
+	 * board.
+	 *
+	 * @param gameBoard array of the game board, as made by Life.getMatrix
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param rule      the birth and survival ranges
+	 */
+	public BufferedLife(boolean[][] gameBoard, int r, int c, LifeRule rule) {
+		this(gameBoard, r, c, rule, 1);
+	}
+
+	/**
+	 * Constructs an engine holding a copy of an existing game board.
+	 *
+	 * @param gameBoard array of the game board, as made by Life.getMatrix
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param rule      the birth and survival ranges
+	 * @param threads   the number of worker threads, which must be positive (1
+	 *                  steps on the calling thread)
+	 */
+	public BufferedLife(boolean[][] gameBoard, int r, int c, LifeRule rule, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Need at least one thread.");
+		}
+		rows = r;
+		columns = c;
+		table = rule.getTable();
+		// Both buffers start with the same border, which never changes
+		current = Life.copyBoard(gameBoard, r, c);
+		next = Life.copyBoard(gameBoard, r, c);
+
+		if (threads > 1) {
+			pool = new ForkJoinPool(threads);
+			bandRows = Math.max(1, (r - 2) / (threads * BANDS_PER_THREAD));
+		}
+	}
+
+	/**
+	 * Starts a new game in the same engine, filling the boards the same way
+	 * Life.getMatrix would. The existing boards are reused when they are large
+	 * enough, so a worker can run many games without allocating new ones.
+	 *
+	 * @param r    number of rows
+	 * @param c    number of columns
+	 * @param s    random seed
+	 * @param rule the birth and survival ranges
+	 */
+	public void reseed(int r, int c, long s, LifeRule rule) {
+		if (current.length < r || (r > 0 && current[0].length < c)) {
+			current = new boolean[r][c];
+			next = new boolean[r][c];
+		}
+		rows = r;
+		columns = c;
+		table = rule.getTable();
+		generation = 0;
+		if (pool != null) {
+			bandRows = Math.max(1, (r - 2) / (pool.getParallelism() * BANDS_PER_THREAD));
+		}
+
+		Life.fillMatrix(current, r, c, s);
+		for (int i = 0; i < r; i++) {
+			System.arraycopy(current[i], 0, next[i], 0, c);
+		}
+		if (rowHashes != null) {
+			setHashing(true);
+		}
+	}
+
+	/**
+	 * Sets the generation number, for continuing a game saved in a checkpoint.
+	 *
+	 * @param generation the generation the board is at
+	 */
+	public void setGeneration(long generation) {
+		this.generation = generation;
+	}
+
+	/**
+	 * Sets where per-generation metrics are reported. Counting births and deaths
+	 * takes an extra pass over the board, so it is only done while a sink is
+	 * set.
+	 *
+	 * @param sink the sink, or null to stop reporting
+	 */
+	public void setMetricsSink(LifeMetricsSink sink) {
+		metrics = sink;
+	}
+
+	/**
+	 * Sets whether the engine keeps the board's CycleDetector hash up to date.
+	 * While it does, each step folds every cell it changes into the hash of its
+	 * row, so getHash costs one pass over the rows instead of over every cell.
+	 *
+	 * @param on true to keep the hash, false to stop
+	 */
+	public void setHashing(boolean on) {
+		if (!on) {
+			rowHashes = null;
+			return;
+		}
+		rowHashes = new long[rows];
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				if (current[i][j]) {
+					rowHashes[i] ^= CycleDetector.cellHash(i, j);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the hash of the current generation, as CycleDetector.hash would
+	 * compute it.
+	 *
+	 * @return the hash of the board
+	 * @throws IllegalStateException if hashing has not been turned on
+	 */
+	public long getHash() {
+		if (rowHashes == null) {
+			throw new IllegalStateException("Hashing is not turned on.");
+		}
+		long hash = 0;
+		for (int i = 0; i < rows; i++) {
+			hash ^= rowHashes[i];
+		}
+		return hash;
+	}
+
+	/**
+	 * Stops the worker threads, if there are any.
+	 *
+	 * @postcondition The engine may no longer be stepped in parallel mode.
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Gets the current generation without copying it.
+	 *
+	 * @return the board holding the current generation, which is overwritten by
+	 *         the step after next (after reseed it may have more rows and columns
+	 *         than the game uses)
+	 */
+	public boolean[][] getBoard() {
+		return current;
+	}
+
+	/**
+	 * Gets the previous generation without copying it.
+	 *
+	 * @return the board holding the generation before the current one (or a
+	 *         copy of the current one before the first step), which the next
+	 *         step overwrites
+	 */
+	public boolean[][] getPreviousBoard() {
+		return next;
+	}
+
+	@Override
+	public void step() {
+		long start = metrics == null ? 0 : System.nanoTime();
+		if (pool == null) {
+			stepRows(1, rows - 1);
+		} else if (rows > 2) {
+			pool.invoke(new Band(1, rows - 1));
+		}
+
+		boolean[][] temp = current;
+		current = next;
+		next = temp;
+		generation++;
+
+		if (metrics != null) {
+			report(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Counts what changed in the last step and sends it to the metrics sink.
+	 *
+	 * @param elapsed the time the step took, in nanoseconds
+	 */
+	private void report(long elapsed) {
+		long population = 0;
+		long births = 0;
+		long deaths = 0;
+		for (int i = 0; i < rows; i++) {
+			boolean[] now = current[i];
+			boolean[] before = next[i];
+			for (int j = 0; j < columns; j++) {
+				if (now[j]) {
+					population++;
+					if (!before[j]) {
+						births++;
+					}
+				} else if (before[j]) {
+					deaths++;
+				}
+			}
+		}
+		metrics.record(generation, population, births, deaths, elapsed,
+				(long) Math.max(0, rows - 2) * Math.max(0, columns - 2));
+	}
+
+	/**
+	 * Computes the next generation of a range of interior rows.
+	 *
+	 * @param fromRow the first row to compute
+	 * @param toRow   one past the last row to compute
+	 */
+	private void stepRows(int fromRow, int toRow) {
+		// A board under three columns wide has no interior cells, and no column 1
+		// to start the window from
+		if (columns < 3) {
+			return;
+		}
+		for (int i = fromRow; i < toRow; i++) {
+			boolean[] above = current[i - 1];
+			boolean[] same = current[i];
+			boolean[] below = current[i + 1];
+			boolean[] target = next[i];
+
+			// Slide a 3x3 window along the row, one column at a time
+			int pattern = LifeRule.startPattern(above, same, below);
+			if (rowHashes == null) {
+				for (int j = 1; j < columns - 1; j++) {
+					pattern = ((pattern << 1) & LifeRule.SHIFT_MASK) | LifeRule.columnBits(above, same, below, j + 1);
+					target[j] = table[pattern];
+				}
+				continue;
+			}
+
+			// The same, also folding every cell that changes into the row's hash
+			long changes = 0;
+			for (int j = 1; j < columns - 1; j++) {
+				pattern = ((pattern << 1) & LifeRule.SHIFT_MASK) | LifeRule.columnBits(above, same, below, j + 1);
+				boolean alive = table[pattern];
+				target[j] = alive;
+				if (alive != same[j]) {
+					changes ^= CycleDetector.cellHash(i, j);
+				}
+			}
+			rowHashes[i] ^= changes;
+		}
+	}
+
+	/**
+	 * A band of rows computed as one task, split in half until it is small
+	 * enough.
+	 */
+	private class Band extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The first row of the band. */
+		private int fromRow;
+		/** One past the last row of the band. */
+		private int toRow;
+
+		/**
+		 * Constructs a new band.
+		 *
+		 * @param fromRow the first row of the band
+		 * @param toRow   one past the last row of the band
+		 */
+		Band(int fromRow, int toRow) {
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+		}
+
+		@Override
+		protected void compute() {
+			if (toRow - fromRow <= bandRows) {
+				stepRows(fromRow, toRow);
+			} else {
+				int middle = (fromRow + toRow) >>> 1;
+				invokeAll(new Band(fromRow, middle), new Band(middle, toRow));
+			}
+		}
+	}
+
+	@Override
+	public boolean isAlive(int row, int column) {
+		return current[row][column];
+	}
+
+	@Override
+	public int getRows() {
+		return rows;
+	}
+
+	@Override
+	public int getColumns() {
+		return columns;
+	}
+
+	@Override
+	public long getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public long getPopulation() {
+		long population = 0;
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				if (current[i][j]) {
+					population++;
+				}
+			}
+		}
+		return population;
+	}
+
+	@Override
+	public boolean[][] toMatrix() {
+		return Life.copyBoard(current, rows, columns);
+	}
+}
@@ -0,0 +1,1196 @@
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A thread-safe collection of elements, stored in a balanced tree in order.
+ *
+ * Writers lock only the nodes they change. An add or remove searches without
+ * locking, then locks the node it changes (and its parent, if the node is
+ * unlinked), so writers working in different parts of the tree do not wait for
+ * each other. Rebalancing is done by the writer afterward, one rotation at a
+ * time, each holding the locks of just the parent, the node and the one or two
+ * children being rotated. The tree is a relaxed AVL tree: while writes are in
+ * progress some heights may be briefly out of date, but once every write has
+ * finished it is balanced again.
+ *
+ * Readers never lock. Every node has a version number that a writer changes
+ * whenever a rotation could move keys out of the node's subtree. A search
+ * reads a node's version before stepping into it and checks it again after
+ * reading the next child; if it changed, the search backs up one level and
+ * tries again from there instead of starting over at the root. contains,
+ * floor and ceiling are searches of this kind. (This is the tree of Bronson,
+ * Casper, Chafi and Olukotun, "A Practical Concurrent Binary Search Tree",
+ * without its lazy cloning.)
+ *
+ * Iterators, streams and the getElements methods work on a snapshot. Taking
+ * one waits for the writes in progress to finish, holds back new writes while
+ * the elements are copied, and then lets them go, so a snapshot costs O(n)
+ * and briefly stalls writers. Writers count themselves in slots spread by
+ * thread rather than in one shared counter, so they do not contend with each
+ * other when no snapshot is being taken.
+ *
+ * Copies of an element are counted in a single node, which keeps the first
+ * copy added; iterating returns that copy once for each one in the tree. A
+ * node whose count drops to zero while it has two children stays in the tree
+ * as a routing node until it can be unlinked.
+ *
+ * @param <E> The type of element stored in the tree.
+ */
+public class ConcurrentBinarySearchTree<E extends Comparable<E>> implements Iterable<E> {
+
+	/** The version of a node that has been unlinked from the tree. */
+	private static final long UNLINKED = 1L;
+	/** Set in a node's version while a rotation is moving it. */
+	private static final long CHANGING = 2L;
+	/** Added to a node's version each time a rotation moves it. */
+	private static final long CHANGE_STEP = 4L;
+	/** How many times a reader spins before blocking on a changing node. */
+	private static final int SPINS = 100;
+
+	/** Returned by a search step that must be retried from the level above. */
+	private static final Object RETRY = new Object();
+
+	/** nodeCondition: the node is a routing node with at most one child. */
+	private static final int UNLINK_REQUIRED = -1;
+	/** nodeCondition: the node's subtrees differ in height by more than one. */
+	private static final int REBALANCE_REQUIRED = -2;
+	/** nodeCondition: the node is fine. */
+	private static final int NOTHING_REQUIRED = -3;
+
+	/** The number of slots writers count themselves in (a power of two). */
+	private static final int WRITER_SLOTS = 64;
+	/** The distance between slots, so each one has its own cache line. */
+	private static final int SLOT_SPACING = 16;
+
+	/**
+	 * A node in the tree. A node's links, height and count are only changed while
+	 * holding its lock, but can be read at any time.
+	 *
+	 * @param <E> The type of data stored in the node.
+	 */
+	private static final class Node<E> {
+
+		/** The piece of data stored in this node (null only for the holder). */
+		final E data;
+		/** The number of copies of data in the tree (0 for a routing node). */
+		volatile int count;
+		/** The number of nodes on the longest path from this node to a leaf. */
+		volatile int height;
+		/** UNLINKED, or a count of rotations plus the CHANGING bit. */
+		volatile long version;
+		/** The parent of this node. */
+		volatile Node<E> parent;
+		/** The left subtree of this node. */
+		volatile Node<E> left;
+		/** The right subtree of this node. */
+		volatile Node<E> right;
+
+		/**
+		 * Creates a new leaf holding one copy of an element.
+		 *
+		 * @param data   The data to store (null for the holder).
+		 * @param parent The parent of the new node.
+		 */
+		Node(E data, Node<E> parent) {
+			this.data = data;
+			this.parent = parent;
+			count = data == null ? 0 : 1;
+			height = 1;
+		}
+
+		/**
+		 * Gets one of the children.
+		 *
+		 * @param goLeft True for the left child, false for the right.
+		 * @return That child (could be null).
+		 */
+		Node<E> child(boolean goLeft) {
+			return goLeft ? left : right;
+		}
+	}
+
+	// Class invariants:
+	// For every linked node X, the values stored in all of X's left descendants
+	// are < the value stored in X, and in all of its right descendants are > it.
+	// Once no writes are in progress, every node's height is correct, the
+	// heights of its subtrees differ by at most one, and every routing node has
+	// two children.
+
+	/** A node with no data whose right child is the root of the tree. */
+	private final Node<E> holder;
+	/** The total count of all nodes. */
+	private final LongAdder size;
+
+	/** The number of writes in progress, in slots spread by thread. */
+	private final AtomicIntegerArray writers;
+	/** True while a snapshot is being taken and new writes must wait. */
+	private volatile boolean frozen;
+	/** Held while a snapshot is taken, and waited on by the writes it holds back. */
+	private final Object freezeLock;
+
+	/**
+	 * Initializes a new, empty tree.
+	 */
+	public ConcurrentBinarySearchTree() {
+		holder = new Node<E>(null, null);
+		size = new LongAdder();
+		writers = new AtomicIntegerArray(WRITER_SLOTS * SLOT_SPACING);
+		freezeLock = new Object();
+	}
+
+	//// Writing ////
+
+	/**
+	 * Adds a new element to the tree.
+	 *
+	 * @param value The element to add.
+	 * @postcondition The tree contains one more copy of the element than it used
+	 *                to.
+	 */
+	public void add(E value) {
+		int slot = startWrite();
+		try {
+			// the holder never moves, so this never has to retry
+			attemptAdd(value, holder, false, holder.version);
+			size.increment();
+		} finally {
+			endWrite(slot);
+		}
+	}
+
+	/**
+	 * Adds an element below a child of a node, whose version was read before the
+	 * child was.
+	 *
+	 * @param value       The element to add.
+	 * @param node        The node to start from.
+	 * @param goLeft      Which child of node to search.
+	 * @param nodeVersion The version of node when the search reached it.
+	 * @return Boolean.TRUE once the element is added, or RETRY if node moved and
+	 *         the search must go back a level.
+	 */
+	private Object attemptAdd(E value, Node<E> node, boolean goLeft, long nodeVersion) {
+		Object result;
+		do {
+			Node<E> child = node.child(goLeft);
+			if (node.version != nodeVersion) {
+				return RETRY;
+			}
+			if (child == null) {
+				result = attemptInsert(value, node, goLeft, nodeVersion);
+			} else {
+				int comparison = value.compareTo(child.data);
+				if (comparison == 0) {
+					result = attemptIncrement(child);
+				} else {
+					long childVersion = child.version;
+					if ((childVersion & CHANGING) != 0) {
+						waitUntilNotChanging(child);
+						result = RETRY;
+					} else if (childVersion != UNLINKED && child == node.child(goLeft)) {
+						if (node.version != nodeVersion) {
+							return RETRY;
+						}
+						result = attemptAdd(value, child, comparison < 0, childVersion);
+					} else {
+						result = RETRY;
+					}
+				}
+			}
+		} while (result == RETRY);
+		return result;
+	}
+
+	/**
+	 * Hangs a new leaf from an empty child link.
+	 *
+	 * @param value       The element to add.
+	 * @param node        The node that gets the leaf.
+	 * @param goLeft      Which side the leaf goes on.
+	 * @param nodeVersion The version of node when the search reached it.
+	 * @return Boolean.TRUE, or RETRY if node moved or the link was taken.
+	 */
+	private Object attemptInsert(E value, Node<E> node, boolean goLeft, long nodeVersion) {
+		synchronized (node) {
+			if (node.version != nodeVersion || node.child(goLeft) != null) {
+				return RETRY;
+			}
+			if (goLeft) {
+				node.left = new Node<E>(value, node);
+			} else {
+				node.right = new Node<E>(value, node);
+			}
+		}
+		fixHeightAndRebalance(node);
+		return Boolean.TRUE;
+	}
+
+	/**
+	 * Adds a copy to the node that already holds an element.
+	 *
+	 * @param node The node.
+	 * @return Boolean.TRUE, or RETRY if the node was unlinked first.
+	 */
+	private Object attemptIncrement(Node<E> node) {
+		synchronized (node) {
+			if (node.version == UNLINKED) {
+				return RETRY;
+			}
+			node.count++;
+		}
+		return Boolean.TRUE;
+	}
+
+	/**
+	 * Removes one copy of an element from the tree, if at least one exists.
+	 *
+	 * @param value The element to remove.
+	 * @return True if a copy was removed, or false if there was none.
+	 * @postcondition If the tree contained at least one copy of the element, it has
+	 *                one fewer.
+	 */
+	public boolean remove(E value) {
+		int slot = startWrite();
+		try {
+			if (attemptRemove(value, holder, false, holder.version) == Boolean.TRUE) {
+				size.decrement();
+				return true;
+			}
+			return false;
+		} finally {
+			endWrite(slot);
+		}
+	}
+
+	/**
+	 * Removes a copy of an element below a child of a node.
+	 *
+	 * @param value       The element to remove.
+	 * @param node        The node to start from.
+	 * @param goLeft      Which child of node to search.
+	 * @param nodeVersion The version of node when the search reached it.
+	 * @return Boolean.TRUE if a copy was removed, Boolean.FALSE if there was none,
+	 *         or RETRY if node moved and the search must go back a level.
+	 */
+	private Object attemptRemove(E value, Node<E> node, boolean goLeft, long nodeVersion) {
+		Object result;
+		do {
+			Node<E> child = node.child(goLeft);
+			if (node.version != nodeVersion) {
+				return RETRY;
+			}
+			if (child == null) {
+				return Boolean.FALSE;
+			}
+			int comparison = value.compareTo(child.data);
+			if (comparison == 0) {
+				result = attemptDecrement(node, child);
+			} else {
+				long childVersion = child.version;
+				if ((childVersion & CHANGING) != 0) {
+					waitUntilNotChanging(child);
+					result = RETRY;
+				} else if (childVersion != UNLINKED && child == node.child(goLeft)) {
+					if (node.version != nodeVersion) {
+						return RETRY;
+					}
+					result = attemptRemove(value, child, comparison < 0, childVersion);
+				} else {
+					result = RETRY;
+				}
+			}
+		} while (result == RETRY);
+		return result;
+	}
+
+	/**
+	 * Takes a copy away from the node holding an element, unlinking the node if
+	 * that was the last copy and it has at most one child.
+	 *
+	 * @param parent The parent the search found the node under.
+	 * @param node   The node.
+	 * @return Boolean.TRUE if a copy was removed, Boolean.FALSE if the node had
+	 *         none left, or RETRY if the node moved.
+	 */
+	private Object attemptDecrement(Node<E> parent, Node<E> node) {
+		if (node.count == 0) {
+			return Boolean.FALSE;
+		}
+		if (node.count > 1 || (node.left != null && node.right != null)) {
+			// only the count changes, so only the node is locked
+			boolean emptied;
+			synchronized (node) {
+				if (node.version == UNLINKED) {
+					return RETRY;
+				}
+				if (node.count == 0) {
+					return Boolean.FALSE;
+				}
+				node.count--;
+				emptied = node.count == 0;
+			}
+			if (emptied) {
+				// a child may have gone since we looked; if so it is unlinked now
+				fixHeightAndRebalance(node);
+			}
+			return Boolean.TRUE;
+		}
+		synchronized (parent) {
+			if (parent.version == UNLINKED || node.parent != parent) {
+				return RETRY;
+			}
+			synchronized (node) {
+				if (node.version == UNLINKED) {
+					return RETRY;
+				}
+				if (node.count == 0) {
+					return Boolean.FALSE;
+				}
+				if (node.count > 1 || (node.left != null && node.right != null)) {
+					// it changed since we looked, so it stays linked
+					node.count--;
+					return Boolean.TRUE;
+				}
+				node.count = 0;
+				Node<E> splice = node.left != null ? node.left : node.right;
+				if (parent.left == node) {
+					parent.left = splice;
+				} else {
+					parent.right = splice;
+				}
+				if (splice != null) {
+					splice.parent = parent;
+				}
+				node.version = UNLINKED;
+			}
+		}
+		fixHeightAndRebalance(parent);
+		return Boolean.TRUE;
+	}
+
+	/**
+	 * Counts a write as in progress, waiting first if a snapshot is being taken.
+	 *
+	 * @return The slot the write was counted in, to pass to endWrite.
+	 */
+	private int startWrite() {
+		int slot = (System.identityHashCode(Thread.currentThread()) & (WRITER_SLOTS - 1)) * SLOT_SPACING;
+		while (true) {
+			writers.incrementAndGet(slot);
+			if (!frozen) {
+				return slot;
+			}
+			// a snapshot started first; step back and wait for it
+			writers.decrementAndGet(slot);
+			synchronized (freezeLock) {
+				// the snapshot holds this lock until it is done
+			}
+		}
+	}
+
+	/**
+	 * Counts a write as finished.
+	 *
+	 * @param slot The slot startWrite returned.
+	 */
+	private void endWrite(int slot) {
+		writers.decrementAndGet(slot);
+	}
+
+	/**
+	 * Waits for a node that a rotation is moving.
+	 *
+	 * @param node The node.
+	 */
+	private static void waitUntilNotChanging(Node<?> node) {
+		long version = node.version;
+		if ((version & CHANGING) == 0) {
+			return;
+		}
+		for (int i = 0; i < SPINS && node.version == version; i++) {
+			Thread.onSpinWait();
+		}
+		if (node.version == version) {
+			// rotations hold the node's lock, so this waits until it is done
+			synchronized (node) {
+			}
+		}
+	}
+
+	//// Balancing ////
+	// Methods ending in _nl must be called holding the locks they describe.
+
+	/**
+	 * Gets the height of a subtree.
+	 *
+	 * @param subtreeRoot The root of the subtree (could be null).
+	 * @return The number of nodes on the longest path from the root to a leaf.
+	 */
+	private static int height(Node<?> subtreeRoot) {
+		return subtreeRoot == null ? 0 : subtreeRoot.height;
+	}
+
+	/**
+	 * Works out what a node needs, from a moment's view of it.
+	 *
+	 * @param node The node.
+	 * @return UNLINK_REQUIRED, REBALANCE_REQUIRED or NOTHING_REQUIRED, or else the
+	 *         height the node should have.
+	 */
+	private static int nodeCondition(Node<?> node) {
+		Node<?> left = node.left;
+		Node<?> right = node.right;
+		if ((left == null || right == null) && node.count == 0) {
+			return UNLINK_REQUIRED;
+		}
+		int leftHeight = height(left);
+		int rightHeight = height(right);
+		int balance = leftHeight - rightHeight;
+		if (balance < -1 || balance > 1) {
+			return REBALANCE_REQUIRED;
+		}
+		int newHeight = 1 + Math.max(leftHeight, rightHeight);
+		return node.height != newHeight ? newHeight : NOTHING_REQUIRED;
+	}
+
+	/**
+	 * Fixes heights, balance and routing nodes from a node up toward the root,
+	 * until a node needs nothing.
+	 *
+	 * @param node The lowest node that may need fixing.
+	 */
+	private void fixHeightAndRebalance(Node<E> node) {
+		// the holder has no parent, and never needs fixing
+		while (node != null && node.parent != null) {
+			int condition = nodeCondition(node);
+			if (condition == NOTHING_REQUIRED || node.version == UNLINKED) {
+				return;
+			}
+			if (condition != UNLINK_REQUIRED && condition != REBALANCE_REQUIRED) {
+				synchronized (node) {
+					node = fixHeight_nl(node);
+				}
+			} else {
+				Node<E> parent = node.parent;
+				synchronized (parent) {
+					if (parent.version != UNLINKED && node.parent == parent) {
+						synchronized (node) {
+							node = rebalance_nl(parent, node);
+						}
+					}
+					// otherwise the node moved; look at it again
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fixes a node's height, if that is all it needs. Must hold node's lock.
+	 *
+	 * @param node The node.
+	 * @return The next node to fix: node if it needs more than a height change,
+	 *         its parent if its height changed, or null if nothing is left.
+	 */
+	private Node<E> fixHeight_nl(Node<E> node) {
+		int condition = nodeCondition(node);
+		switch (condition) {
+		case REBALANCE_REQUIRED:
+		case UNLINK_REQUIRED:
+			return node;
+		case NOTHING_REQUIRED:
+			return null;
+		default:
+			node.height = condition;
+			return node.parent;
+		}
+	}
+
+	/**
+	 * Unlinks, rotates or fixes the height of a node. Must hold the locks of
+	 * parent and node.
+	 *
+	 * @param parent The node's parent.
+	 * @param node   The node.
+	 * @return The next node to fix, or null if nothing is left.
+	 */
+	private Node<E> rebalance_nl(Node<E> parent, Node<E> node) {
+		Node<E> left = node.left;
+		Node<E> right = node.right;
+		if ((left == null || right == null) && node.count == 0) {
+			if (attemptUnlink_nl(parent, node)) {
+				return fixHeight_nl(parent);
+			}
+			return node;
+		}
+		int leftHeight = height(left);
+		int rightHeight = height(right);
+		int newHeight = 1 + Math.max(leftHeight, rightHeight);
+		int balance = leftHeight - rightHeight;
+		if (balance > 1) {
+			return rebalanceToRight_nl(parent, node, left, rightHeight);
+		} else if (balance < -1) {
+			return rebalanceToLeft_nl(parent, node, right, leftHeight);
+		} else if (newHeight != node.height) {
+			node.height = newHeight;
+			return fixHeight_nl(parent);
+		}
+		return null;
+	}
+
+	/**
+	 * Unlinks a routing node that has at most one child. Must hold the locks of
+	 * parent and node.
+	 *
+	 * @param parent The node's parent.
+	 * @param node   The node.
+	 * @return True if it was unlinked.
+	 */
+	private boolean attemptUnlink_nl(Node<E> parent, Node<E> node) {
+		if (parent.left != node && parent.right != node) {
+			return false;
+		}
+		Node<E> left = node.left;
+		Node<E> right = node.right;
+		if (left != null && right != null) {
+			return false;
+		}
+		Node<E> splice = left != null ? left : right;
+		if (parent.left == node) {
+			parent.left = splice;
+		} else {
+			parent.right = splice;
+		}
+		if (splice != null) {
+			splice.parent = parent;
+		}
+		node.version = UNLINKED;
+		return true;
+	}
+
+	/**
+	 * Fixes a node whose left subtree is too tall. Must hold the locks of parent
+	 * and node.
+	 *
+	 * @param parent      The node's parent.
+	 * @param node        The node.
+	 * @param left        The node's left child.
+	 * @param rightHeight The height of the node's right subtree.
+	 * @return The next node to fix, or null if nothing is left.
+	 */
+	private Node<E> rebalanceToRight_nl(Node<E> parent, Node<E> node, Node<E> left, int rightHeight) {
+		synchronized (left) {
+			if (left.height - rightHeight <= 1) {
+				// it changed since we looked
+				return node;
+			}
+			Node<E> leftRight = left.right;
+			int leftLeftHeight = height(left.left);
+			int leftRightHeight = height(leftRight);
+			if (leftLeftHeight >= leftRightHeight) {
+				return rotateRight_nl(parent, node, left, rightHeight, leftLeftHeight, leftRight, leftRightHeight);
+			}
+			synchronized (leftRight) {
+				leftRightHeight = leftRight.height;
+				if (leftLeftHeight >= leftRightHeight) {
+					return rotateRight_nl(parent, node, left, rightHeight, leftLeftHeight, leftRight,
+							leftRightHeight);
+				}
+				// a double rotation, unless it would leave left unbalanced or leave
+				// it a routing node with one child
+				int leftRightLeftHeight = height(leftRight.left);
+				int balance = leftLeftHeight - leftRightLeftHeight;
+				if (balance >= -1 && balance <= 1
+						&& !((leftLeftHeight == 0 || leftRightLeftHeight == 0) && left.count == 0)) {
+					return rotateRightOverLeft_nl(parent, node, left, rightHeight, leftLeftHeight, leftRight,
+							leftRightLeftHeight);
+				}
+			}
+			// fix the left child first; node is fixed on a later pass
+			return rebalanceToLeft_nl(node, left, leftRight, leftLeftHeight);
+		}
+	}
+
+	/**
+	 * Fixes a node whose right subtree is too tall. Must hold the locks of parent
+	 * and node.
+	 *
+	 * @param parent     The node's parent.
+	 * @param node       The node.
+	 * @param right      The node's right child.
+	 * @param leftHeight The height of the node's left subtree.
+	 * @return The next node to fix, or null if nothing is left.
+	 */
+	private Node<E> rebalanceToLeft_nl(Node<E> parent, Node<E> node, Node<E> right, int leftHeight) {
+		synchronized (right) {
+			if (leftHeight - right.height >= -1) {
+				return node;
+			}
+			Node<E> rightLeft = right.left;
+			int rightLeftHeight = height(rightLeft);
+			int rightRightHeight = height(right.right);
+			if (rightRightHeight >= rightLeftHeight) {
+				return rotateLeft_nl(parent, node, leftHeight, right, rightLeft, rightLeftHeight, rightRightHeight);
+			}
+			synchronized (rightLeft) {
+				rightLeftHeight = rightLeft.height;
+				if (rightRightHeight >= rightLeftHeight) {
+					return rotateLeft_nl(parent, node, leftHeight, right, rightLeft, rightLeftHeight,
+							rightRightHeight);
+				}
+				int rightLeftRightHeight = height(rightLeft.right);
+				int balance = rightRightHeight - rightLeftRightHeight;
+				if (balance >= -1 && balance <= 1
+						&& !((rightRightHeight == 0 || rightLeftRightHeight == 0) && right.count == 0)) {
+					return rotateLeftOverRight_nl(parent, node, leftHeight, right, rightLeft, rightRightHeight,
+							rightLeftRightHeight);
+				}
+			}
+			return rebalanceToRight_nl(node, right, rightLeft, rightRightHeight);
+		}
+	}
+
+	/**
+	 * Moves a node's left child up into its place. Must hold the locks of parent,
+	 * node and left.
+	 *
+	 * @param parent          The node's parent.
+	 * @param node            The node, which moves down to the right.
+	 * @param left            The node's left child, which moves up.
+	 * @param rightHeight     The height of node's right subtree.
+	 * @param leftLeftHeight  The height of left's left subtree.
+	 * @param leftRight       left's right child, which moves across to node.
+	 * @param leftRightHeight The height of leftRight.
+	 * @return The next node to fix, or null if nothing is left.
+	 */
+	private Node<E> rotateRight_nl(Node<E> parent, Node<E> node, Node<E> left, int rightHeight, int leftLeftHeight,
+			Node<E> leftRight, int leftRightHeight) {
+		long version = node.version;
+		Node<E> parentLeft = parent.left;
+		// node loses keys, so searches inside it must retry
+		node.version = version | CHANGING;
+		node.left = leftRight;
+		if (leftRight != null) {
+			leftRight.parent = node;
+		}
+		left.right = node;
+		node.parent = left;
+		if (parentLeft == node) {
+			parent.left = left;
+		} else {
+			parent.right = left;
+		}
+		left.parent = parent;
+		int nodeHeight = 1 + Math.max(leftRightHeight, rightHeight);
+		node.height = nodeHeight;
+		left.height = 1 + Math.max(leftLeftHeight, nodeHeight);
+		node.version = version + CHANGE_STEP;
+
+		// fix what we can with the locks we have, deepest first
+		int nodeBalance = leftRightHeight - rightHeight;
+		if (nodeBalance < -1 || nodeBalance > 1) {
+			return node;
+		}
+		if ((leftRight == null || rightHeight == 0) && node.count == 0) {
+			return node;
+		}
+		int leftBalance = leftLeftHeight - nodeHeight;
+		if (leftBalance < -1 || leftBalance > 1) {
+			return left;
+		}
+		if (leftLeftHeight == 0 && left.count == 0) {
+			return left;
+		}
+		return fixHeight_nl(parent);
+	}
+
+	/**
+	 * Moves a node's right child up into its place. Must hold the locks of
+	 * parent, node and right.
+	 *
+	 * @param parent           The node's parent.
+	 * @param node             The node, which moves down to the left.
+	 * @param leftHeight       The height of node's left subtree.
+	 * @param right            The node's right child, which moves up.
+	 * @param rightLeft        right's left child, which moves across to node.
+	 * @param rightLeftHeight  The height of rightLeft.
+	 * @param rightRightHeight The height of right's right subtree.
+	 * @return The next node to fix, or null if nothing is left.
+	 */
+	private Node<E> rotateLeft_nl(Node<E> parent, Node<E> node, int leftHeight, Node<E> right, Node<E> rightLeft,
+			int rightLeftHeight, int rightRightHeight) {
+		long version = node.version;
+		Node<E> parentLeft = parent.left;
+		node.version = version | CHANGING;
+		node.right = rightLeft;
+		if (rightLeft != null) {
+			rightLeft.parent = node;
+		}
+		right.left = node;
+		node.parent = right;
+		if (parentLeft == node) {
+			parent.left = right;
+		} else {
+			parent.right = right;
+		}
+		right.parent = parent;
+		int nodeHeight = 1 + Math.max(leftHeight, rightLeftHeight);
+		node.height = nodeHeight;
+		right.height = 1 + Math.max(nodeHeight, rightRightHeight);
+		node.version = version + CHANGE_STEP;
+
+		int nodeBalance = rightLeftHeight - leftHeight;
+		if (nodeBalance < -1 || nodeBalance > 1) {
+			return node;
+		}
+		if ((rightLeft == null || leftHeight == 0) && node.count == 0) {
+			return node;
+		}
+		int rightBalance = rightRightHeight - nodeHeight;
+		if (rightBalance < -1 || rightBalance > 1) {
+			return right;
+		}
+		if (rightRightHeight == 0 && right.count == 0) {
+			return right;
+		}
+		return fixHeight_nl(parent);
+	}
+
+	/**
+	 * Moves the right child of a node's left child up into the node's place.
+	 * Must hold the locks of parent, node, left and leftRight.
+	 *
+	 * @param parent              The node's parent.
+	 * @param node                The node, which moves down to the right.
+	 * @param left                The node's left child, which stays on the left.
+	 * @param rightHeight         The height of node's right subtree.
+	 * @param leftLeftHeight      The height of left's left subtree.
+	 * @param leftRight           left's right child, which moves to the top.
+	 * @param leftRightLeftHeight The height of leftRight's left subtree.
+	 * @return The next node to fix, or null if nothing is left.
+	 */
+	private Node<E> rotateRightOverLeft_nl(Node<E> parent, Node<E> node, Node<E> left, int rightHeight,
+			int leftLeftHeight, Node<E> leftRight, int leftRightLeftHeight) {
+		long nodeVersion = node.version;
+		long leftVersion = left.version;
+		Node<E> parentLeft = parent.left;
+		Node<E> leftRightLeft = leftRight.left;
+		Node<E> leftRightRight = leftRight.right;
+		int leftRightRightHeight = height(leftRightRight);
+		// node and left both lose keys
+		node.version = nodeVersion | CHANGING;
+		left.version = leftVersion | CHANGING;
+		node.left = leftRightRight;
+		if (leftRightRight != null) {
+			leftRightRight.parent = node;
+		}
+		left.right = leftRightLeft;
+		if (leftRightLeft != null) {
+			leftRightLeft.parent = left;
+		}
+		leftRight.left = left;
+		left.parent = leftRight;
+		leftRight.right = node;
+		node.parent = leftRight;
+		if (parentLeft == node) {
+			parent.left = leftRight;
+		} else {
+			parent.right = leftRight;
+		}
+		leftRight.parent = parent;
+		int nodeHeight = 1 + Math.max(leftRightRightHeight, rightHeight);
+		node.height = nodeHeight;
+		int leftHeight = 1 + Math.max(leftLeftHeight, leftRightLeftHeight);
+		left.height = leftHeight;
+		leftRight.height = 1 + Math.max(leftHeight, nodeHeight);
+		node.version = nodeVersion + CHANGE_STEP;
+		left.version = leftVersion + CHANGE_STEP;
+
+		int nodeBalance = leftRightRightHeight - rightHeight;
+		if (nodeBalance < -1 || nodeBalance > 1) {
+			return node;
+		}
+		if ((leftRightRight == null || rightHeight == 0) && node.count == 0) {
+			return node;
+		}
+		int topBalance = leftHeight - nodeHeight;
+		if (topBalance < -1 || topBalance > 1) {
+			return leftRight;
+		}
+		return fixHeight_nl(parent);
+	}
+
+	/**
+	 * Moves the left child of a node's right child up into the node's place.
+	 * Must hold the locks of parent, node, right and rightLeft.
+	 *
+	 * @param parent               The node's parent.
+	 * @param node                 The node, which moves down to the left.
+	 * @param leftHeight           The height of node's left subtree.
+	 * @param right                The node's right child, which stays on the
+	 *                             right.
+	 * @param rightLeft            right's left child, which moves to the top.
+	 * @param rightRightHeight     The height of right's right subtree.
+	 * @param rightLeftRightHeight The height of rightLeft's right subtree.
+	 * @return The next node to fix, or null if nothing is left.
+	 */
+	private Node<E> rotateLeftOverRight_nl(Node<E> parent, Node<E> node, int leftHeight, Node<E> right,
+			Node<E> rightLeft, int rightRightHeight, int rightLeftRightHeight) {
+		long nodeVersion = node.version;
+		long rightVersion = right.version;
+		Node<E> parentLeft = parent.left;
+		Node<E> rightLeftLeft = rightLeft.left;
+		Node<E> rightLeftRight = rightLeft.right;
+		int rightLeftLeftHeight = height(rightLeftLeft);
+		node.version = nodeVersion | CHANGING;
+		right.version = rightVersion | CHANGING;
+		node.right = rightLeftLeft;
+		if (rightLeftLeft != null) {
+			rightLeftLeft.parent = node;
+		}
+		right.left = rightLeftRight;
+		if (rightLeftRight != null) {
+			rightLeftRight.parent = right;
+		}
+		rightLeft.right = right;
+		right.parent = rightLeft;
+		rightLeft.left = node;
+		node.parent = rightLeft;
+		if (parentLeft == node) {
+			parent.left = rightLeft;
+		} else {
+			parent.right = rightLeft;
+		}
+		rightLeft.parent = parent;
+		int nodeHeight = 1 + Math.max(leftHeight, rightLeftLeftHeight);
+		node.height = nodeHeight;
+		int rightHeight = 1 + Math.max(rightLeftRightHeight, rightRightHeight);
+		right.height = rightHeight;
+		rightLeft.height = 1 + Math.max(nodeHeight, rightHeight);
+		node.version = nodeVersion + CHANGE_STEP;
+		right.version = rightVersion + CHANGE_STEP;
+
+		int nodeBalance = rightLeftLeftHeight - leftHeight;
+		if (nodeBalance < -1 || nodeBalance > 1) {
+			return node;
+		}
+		if ((rightLeftLeft == null || leftHeight == 0) && node.count == 0) {
+			return node;
+		}
+		int topBalance = rightHeight - nodeHeight;
+		if (topBalance < -1 || topBalance > 1) {
+			return rightLeft;
+		}
+		return fixHeight_nl(parent);
+	}
+
+	//// Reading ////
+
+	/**
+	 * Finds the node holding an element below a child of a node.
+	 *
+	 * @param value       The element to look for.
+	 * @param node        The node to start from.
+	 * @param goLeft      Which child of node to search.
+	 * @param nodeVersion The version of node when the search reached it.
+	 * @return The node holding the element, null if there is none, or RETRY if
+	 *         node moved and the search must go back a level.
+	 */
+	private Object attemptFind(E value, Node<E> node, boolean goLeft, long nodeVersion) {
+		while (true) {
+			Node<E> child = node.child(goLeft);
+			if (node.version != nodeVersion) {
+				return RETRY;
+			}
+			if (child == null) {
+				return null;
+			}
+			int comparison = value.compareTo(child.data);
+			if (comparison == 0) {
+				return child;
+			}
+			long childVersion = child.version;
+			if ((childVersion & CHANGING) != 0) {
+				waitUntilNotChanging(child);
+			} else if (childVersion != UNLINKED && child == node.child(goLeft)) {
+				if (node.version != nodeVersion) {
+					return RETRY;
+				}
+				Object found = attemptFind(value, child, comparison < 0, childVersion);
+				if (found != RETRY) {
+					return found;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks whether or not this tree contains an element. Never locks: it only
+	 * waits while a rotation moves a node it is passing.
+	 *
+	 * @param value The element to look for.
+	 * @return True if the tree contains at least one copy of the element, or false.
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean contains(E value) {
+		Object found = attemptFind(value, holder, false, holder.version);
+		return found != null && ((Node<E>) found).count > 0;
+	}
+
+	/**
+	 * Gets the number of elements in the tree. While writes are in progress this
+	 * may count some of them and not others.
+	 *
+	 * @return The number of elements in the tree.
+	 */
+	public int size() {
+		return (int) size.sum();
+	}
+
+	/**
+	 * Gets the depth of the tree.
+	 *
+	 * @return The length of the longest path from overall root to a leaf.
+	 */
+	public int depth() {
+		return height(holder.right) - 1;
+	}
+
+	/**
+	 * Finds the element nearest a value on one side, below a child of a node.
+	 *
+	 * @param value       The value to compare with.
+	 * @param below       True to look for the largest element <= value, false
+	 *                    for the smallest element >= value.
+	 * @param node        The node to start from.
+	 * @param goLeft      Which child of node to search.
+	 * @param nodeVersion The version of node when the search reached it.
+	 * @return The element, null if there is none in that subtree, or RETRY if
+	 *         node moved and the search must go back a level.
+	 */
+	private Object attemptNearest(E value, boolean below, Node<E> node, boolean goLeft, long nodeVersion) {
+		while (true) {
+			Node<E> child = node.child(goLeft);
+			if (node.version != nodeVersion) {
+				return RETRY;
+			}
+			if (child == null) {
+				return null;
+			}
+			int comparison = value.compareTo(child.data);
+			if (comparison == 0 && child.count > 0) {
+				return child.data;
+			}
+			long childVersion = child.version;
+			if ((childVersion & CHANGING) != 0) {
+				waitUntilNotChanging(child);
+			} else if (childVersion != UNLINKED && child == node.child(goLeft)) {
+				if (node.version != nodeVersion) {
+					return RETRY;
+				}
+				// child is an answer if it is on the wanted side of value, but a
+				// closer one can only be in its subtree toward value
+				boolean candidate = below ? comparison > 0 : comparison < 0;
+				boolean nextLeft = below ? comparison <= 0 : comparison < 0;
+				Object found = attemptNearest(value, below, child, nextLeft, childVersion);
+				if (found == null && candidate) {
+					if (child.count > 0) {
+						return child.data;
+					}
+					// a routing node is no answer, but its other subtree is all on
+					// the wanted side, so the nearest there is
+					found = attemptNearest(value, below, child, !nextLeft, childVersion);
+				}
+				if (found != RETRY) {
+					return found;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the largest element less than or equal to a value.
+	 *
+	 * @param value The value to compare with (which need not be in the tree).
+	 * @return The largest element <= value, or null if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public E floor(E value) {
+		return (E) attemptNearest(value, true, holder, false, holder.version);
+	}
+
+	/**
+	 * Finds the smallest element greater than or equal to a value.
+	 *
+	 * @param value The value to compare with (which need not be in the tree).
+	 * @return The smallest element >= value, or null if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public E ceiling(E value) {
+		return (E) attemptNearest(value, false, holder, false, holder.version);
+	}
+
+	//// Snapshots ////
+
+	/**
+	 * Reads the tree with every write held back: waits for the writes in
+	 * progress to finish, keeps new ones waiting while reading, then lets them
+	 * go.
+	 *
+	 * @param reader What to read.
+	 * @return What reader returned.
+	 */
+	private <T> T whileFrozen(Supplier<T> reader) {
+		synchronized (freezeLock) {
+			frozen = true;
+			try {
+				for (int slot = 0; slot < writers.length(); slot += SLOT_SPACING) {
+					while (writers.get(slot) != 0) {
+						Thread.yield();
+					}
+				}
+				return reader.get();
+			} finally {
+				frozen = false;
+			}
+		}
+	}
+
+	/**
+	 * Copies the elements in in-order.
+	 *
+	 * @return An array of every copy of every element, from smallest to largest.
+	 */
+	private Object[] snapshot() {
+		return whileFrozen(() -> {
+			Object[] elements = new Object[size()];
+			appendIn(elements, 0, holder.right);
+			return elements;
+		});
+	}
+
+	/**
+	 * Copies the elements of a subtree in in-order.
+	 *
+	 * @param elements    The array to copy into.
+	 * @param next        The index of the first one to fill.
+	 * @param subtreeRoot The root of the subtree.
+	 * @return The index after the last one filled.
+	 */
+	private static int appendIn(Object[] elements, int next, Node<?> subtreeRoot) {
+		if (subtreeRoot != null) {
+			next = appendIn(elements, next, subtreeRoot.left);
+			for (int i = 0; i < subtreeRoot.count; i++) {
+				elements[next++] = subtreeRoot.data;
+			}
+			next = appendIn(elements, next, subtreeRoot.right);
+		}
+		return next;
+	}
+
+	/**
+	 * Gets an iterator over the elements in in-order (from smallest to largest),
+	 * as they were when this method was called.
+	 *
+	 * @return An iterator over a snapshot of the elements.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return Spliterators.iterator(spliterator());
+	}
+
+	/**
+	 * Gets a Spliterator over a snapshot of the elements in in-order.
+	 *
+	 * @return A Spliterator whose size is exact.
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return Spliterators.spliterator(snapshot(), Spliterator.ORDERED | Spliterator.SORTED);
+	}
+
+	/**
+	 * Gets a sequential stream of a snapshot of the elements in in-order.
+	 *
+	 * @return A stream of the elements.
+	 */
+	public Stream<E> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * Gets a String containing all of the elements in in-order.
+	 *
+	 * @return A String containing all of the elements in in-order.
+	 */
+	public String getElementsIn() {
+		StringBuilder builder = new StringBuilder();
+		for (E element : this) {
+			builder.append(element).append(' ');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Gets a String containing all of the elements in pre-order.
+	 *
+	 * @return A String containing all of the elements in pre-order.
+	 */
+	public String getElementsPre() {
+		return whileFrozen(() -> {
+			StringBuilder builder = new StringBuilder();
+			appendPre(builder, holder.right);
+			return builder.toString();
+		});
+	}
+
+	/**
+	 * Appends the elements of a subtree in pre-order.
+	 *
+	 * @param builder     The StringBuilder to append to.
+	 * @param subtreeRoot The root of the subtree.
+	 */
+	private static void appendPre(StringBuilder builder, Node<?> subtreeRoot) {
+		if (subtreeRoot != null) {
+			for (int i = 0; i < subtreeRoot.count; i++) {
+				builder.append(subtreeRoot.data).append(' ');
+			}
+			appendPre(builder, subtreeRoot.left);
+			appendPre(builder, subtreeRoot.right);
+		}
+	}
+
+	/**
+	 * Gets a String containing all of the elements in post-order.
+	 *
+	 * @return A String containing all of the elements in post-order.
+	 */
+	public String getElementsPost() {
+		return whileFrozen(() -> {
+			StringBuilder builder = new StringBuilder();
+			appendPost(builder, holder.right);
+			return builder.toString();
+		});
+	}
+
+	/**
+	 * Appends the elements of a subtree in post-order.
+	 *
+	 * @param builder     The StringBuilder to append to.
+	 * @param subtreeRoot The root of the subtree.
+	 */
+	private static void appendPost(StringBuilder builder, Node<?> subtreeRoot) {
+		if (subtreeRoot != null) {
+			appendPost(builder, subtreeRoot.left);
+			appendPost(builder, subtreeRoot.right);
+			for (int i = 0; i < subtreeRoot.count; i++) {
+				builder.append(subtreeRoot.data).append(' ');
+			}
+		}
+	}
+}
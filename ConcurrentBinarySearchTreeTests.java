@@ -0,0 +1,250 @@
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.FixMethodOrder;
+
+/*
+ * You must include the Junit4 library to use this test unit.
+ *
+ * To add it, select the project and then choose Properties... from the File menu.
+ * Click on "Java Build Path" in the panel at the left.
+ * Select Libraries from the list at the top.
+ * Select Add Library... from the right side of the panel.
+ * Select JUnit and click on Next.
+ * Change the version to JUnit 4 and click on Finish.
+ * Click on OK in the properties panel.
+ *
+ * You can then run these tests using "Run As JUnit Test" instead of "Runs As Java Application".
+ */
+
+/**
+ * Multi-threaded stress tests for ConcurrentBinarySearchTree.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ConcurrentBinarySearchTreeTests {
+
+	/** The number of threads each test starts. */
+	private static final int THREADS = 8;
+
+	/**
+	 * Work done by one thread of a test.
+	 */
+	private interface Task {
+
+		/**
+		 * Does the work.
+		 *
+		 * @param thread The number of this thread, from 0 to THREADS - 1.
+		 * @throws Exception If the work fails.
+		 */
+		public abstract void run(int thread) throws Exception;
+	}
+
+	/**
+	 * Runs a task on THREADS threads at once and waits for all of them,
+	 * rethrowing the first failure.
+	 *
+	 * @param task The task.
+	 * @throws Exception If any thread failed.
+	 */
+	private static void runConcurrently(Task task) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			// Start every thread at the same moment, so they really overlap
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for (int t = 0; t < THREADS; t++) {
+				int thread = t;
+				Callable<Void> work = () -> {
+					start.await();
+					task.run(thread);
+					return null;
+				};
+				results.add(pool.submit(work));
+			}
+			start.countDown();
+			for (Future<Void> result : results) {
+				result.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Checks that a tree's elements come out in order.
+	 *
+	 * @param tree The tree.
+	 * @return The number of elements seen.
+	 */
+	private static int assertSorted(ConcurrentBinarySearchTree<Integer> tree) {
+		int count = 0;
+		Integer previous = null;
+		for (Integer element : tree) {
+			if (previous != null) {
+				assertTrue("Elements came out of order.", previous <= element);
+			}
+			previous = element;
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Adds different elements from many threads at once.
+	 */
+	@Test
+	public void test01ConcurrentAdds() throws Exception {
+		ConcurrentBinarySearchTree<Integer> tree = new ConcurrentBinarySearchTree<Integer>();
+		int perThread = 20000;
+		runConcurrently(thread -> {
+			for (int i = 0; i < perThread; i++) {
+				tree.add(i * THREADS + thread);
+			}
+		});
+		assertEquals("Adds were lost.", THREADS * perThread, tree.size());
+		assertEquals("Iterating gave a different number of elements than size.", tree.size(), assertSorted(tree));
+		Iterator<Integer> elements = tree.iterator();
+		for (int i = 0; i < THREADS * perThread; i++) {
+			assertEquals("Wrong element in order.", Integer.valueOf(i), elements.next());
+		}
+		int limit = (int) (1.45 * Math.log(THREADS * perThread + 2) / Math.log(2));
+		assertTrue("Tree is not balanced.", tree.depth() <= limit);
+	}
+
+	/**
+	 * Adds copies of the same element from many threads, then removes them all.
+	 */
+	@Test
+	public void test02ConcurrentDuplicates() throws Exception {
+		ConcurrentBinarySearchTree<Integer> tree = new ConcurrentBinarySearchTree<Integer>();
+		int perThread = 5000;
+		runConcurrently(thread -> {
+			for (int i = 0; i < perThread; i++) {
+				tree.add(7);
+			}
+		});
+		assertEquals("Duplicate adds were lost.", THREADS * perThread, tree.size());
+		runConcurrently(thread -> {
+			for (int i = 0; i < perThread; i++) {
+				assertTrue("A copy that was added could not be removed.", tree.remove(7));
+			}
+		});
+		assertEquals("Removes were lost.", 0, tree.size());
+		assertFalse("Removing from an empty tree claimed to succeed.", tree.remove(7));
+	}
+
+	/**
+	 * Has every thread add and remove its own elements at random, and checks
+	 * that the tree ends up holding exactly what each thread left in it.
+	 */
+	@Test
+	public void test03ConcurrentAddsAndRemoves() throws Exception {
+		ConcurrentBinarySearchTree<Integer> tree = new ConcurrentBinarySearchTree<Integer>();
+		int keysPerThread = 500;
+		int[][] copies = new int[THREADS][keysPerThread];
+		runConcurrently(thread -> {
+			Random random = new Random(thread);
+			for (int op = 0; op < 50000; op++) {
+				int key = random.nextInt(keysPerThread);
+				int value = key * THREADS + thread;
+				if (random.nextBoolean()) {
+					tree.add(value);
+					copies[thread][key]++;
+				} else {
+					assertEquals("Remove disagreed with this thread's own count.", copies[thread][key] > 0,
+							tree.remove(value));
+					if (copies[thread][key] > 0) {
+						copies[thread][key]--;
+					}
+				}
+			}
+		});
+		int expected = 0;
+		for (int thread = 0; thread < THREADS; thread++) {
+			for (int key = 0; key < keysPerThread; key++) {
+				expected += copies[thread][key];
+				assertEquals("Wrong membership after concurrent changes.", copies[thread][key] > 0,
+						tree.contains(key * THREADS + thread));
+			}
+		}
+		assertEquals("Wrong size after concurrent changes.", expected, tree.size());
+		assertEquals("Iterating gave a different number of elements than size.", expected, assertSorted(tree));
+	}
+
+	/**
+	 * Reads while other threads write, checking that readers always see a
+	 * consistent tree and never miss elements nobody removes.
+	 */
+	@Test
+	public void test04ReadersDuringWrites() throws Exception {
+		ConcurrentBinarySearchTree<Integer> tree = new ConcurrentBinarySearchTree<Integer>();
+		int stable = 1000;
+		for (int i = 0; i < stable; i++) {
+			tree.add(2 * i);
+		}
+		AtomicBoolean writing = new AtomicBoolean(true);
+		int writers = THREADS / 2;
+		runConcurrently(thread -> {
+			Random random = new Random(thread);
+			if (thread < writers) {
+				// writers only touch odd numbers
+				for (int op = 0; op < 100000; op++) {
+					int value = 2 * random.nextInt(stable) + 1;
+					tree.add(value);
+					tree.remove(value);
+				}
+				writing.set(false);
+			} else {
+				while (writing.get()) {
+					int value = 2 * random.nextInt(stable);
+					assertTrue("A reader missed an element nobody removed.", tree.contains(value));
+					assertEquals("Floor skipped an element nobody removed.", Integer.valueOf(value),
+							tree.floor(value));
+					// each snapshot holds the stable elements plus at most one per writer
+					int count = assertSorted(tree);
+					assertTrue("A reader saw a torn tree.", count >= stable && count <= stable + writers);
+				}
+			}
+		});
+		assertEquals("Writers did not leave the tree as they found it.", stable, tree.size());
+	}
+
+	/**
+	 * Checks that an iterator keeps walking the version of the tree it started
+	 * on.
+	 */
+	@Test
+	public void test05IteratorIsSnapshot() {
+		ConcurrentBinarySearchTree<Integer> tree = new ConcurrentBinarySearchTree<Integer>();
+		for (int i = 0; i < 10; i++) {
+			tree.add(i);
+		}
+		Iterator<Integer> elements = tree.iterator();
+		for (int i = 0; i < 10; i++) {
+			tree.remove(i);
+			tree.add(100 + i);
+		}
+		for (int i = 0; i < 10; i++) {
+			assertEquals("Iterator saw changes made after it was created.", Integer.valueOf(i), elements.next());
+		}
+		assertFalse("Iterator saw changes made after it was created.", elements.hasNext());
+		assertEquals("Wrong elements after replacing them.", "100 101 102 103 104 105 106 107 108 109 ",
+				tree.getElementsIn());
+	}
+}
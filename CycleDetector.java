@@ -0,0 +1,218 @@
+/**
+ * Notices when a game of Life has settled into a still life or a short cycle.
+ *
+ * Every generation is reduced to a 64-bit hash: the XOR of a fixed random
+ * value for each occupied cell. An engine can keep that hash up to date as it
+ * writes the cells that change, so nothing has to rescan the board. Only the
+ * hashes of the last few generations are kept. When the newest hash matches
+ * one from p generations ago, the board is compared cell by cell to rule out a
+ * hash collision: against the engine's previous board when p is 1, and
+ * otherwise against a single copy taken now and checked again p generations
+ * later. If they are equal the game repeats with period p from then on.
+ */
+public class CycleDetector {
+
+	/** The number of rows on the board. */
+	private int rows;
+	/** The number of columns on the board. */
+	private int columns;
+	/** The longest period that can be detected. */
+	private int maxPeriod;
+
+	/** The hashes of recent generations, in a ring. */
+	private long[] hashes;
+	/** The number of generations observed so far. */
+	private long observed;
+
+	/** A copy of the board whose hash last repeated, or null before the first. */
+	private boolean[][] candidate;
+	/** The hash of the candidate board. */
+	private long candidateHash;
+	/** The number of generations observed when the candidate was copied. */
+	private long candidateObserved;
+	/** The period the candidate is expected to repeat with, or 0 for none. */
+	private int candidatePeriod;
+
+	/** The period found, or 0 if the game has not repeated. */
+	private int period;
+	/** The generation at which the repeat was found. */
+	private long stableGeneration;
+
+	/**
+	 * Constructs a new detector.
+	 *
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param maxPeriod the longest period to look for, which must be positive
+	 */
+	public CycleDetector(int r, int c, int maxPeriod) {
+		if (maxPeriod < 1) {
+			throw new IllegalArgumentException("The period must be at least 1.");
+		}
+		rows = r;
+		columns = c;
+		this.maxPeriod = maxPeriod;
+		hashes = new long[maxPeriod];
+	}
+
+	/**
+	 * Gets the value an occupied cell adds to a board's hash.
+	 *
+	 * @param row    the row of the cell
+	 * @param column the column of the cell
+	 * @return a well-mixed value that is different for every cell
+	 */
+	public static long cellHash(int row, int column) {
+		long z = (((long) row << 32) | (column & 0xFFFFFFFFL)) + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Hashes a whole board.
+	 *
+	 * @param gameBoard array of the game board
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @return a 64-bit hash of the board
+	 */
+	public static long hash(boolean[][] gameBoard, int r, int c) {
+		long hash = 0;
+		for (int i = 0; i < r; i++) {
+			boolean[] row = gameBoard[i];
+			for (int j = 0; j < c; j++) {
+				if (row[j]) {
+					hash ^= cellHash(i, j);
+				}
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Records the next generation of the game and checks whether it repeats an
+	 * earlier one, hashing the whole board.
+	 *
+	 * @param gameBoard  array of the game board
+	 * @param generation the number of this generation
+	 * @return the period of the cycle, or 0 if no repeat has been confirmed
+	 */
+	public int observe(boolean[][] gameBoard, long generation) {
+		return observe(gameBoard, null, hash(gameBoard, rows, columns), generation);
+	}
+
+	/**
+	 * Records the next generation of the game and checks whether it repeats an
+	 * earlier one.
+	 *
+	 * @param gameBoard  array of the game board
+	 * @param previous   the board of the generation before, or null if it is not
+	 *                   available (a still life is then confirmed one
+	 *                   generation later)
+	 * @param hash       the hash of gameBoard, as computed by hash
+	 * @param generation the number of this generation
+	 * @return the period of the cycle, or 0 if no repeat has been confirmed
+	 */
+	public int observe(boolean[][] gameBoard, boolean[][] previous, long hash, long generation) {
+		if (period == 0 && candidatePeriod != 0 && observed == candidateObserved + candidatePeriod) {
+			// The copied board should have come round again by now
+			if (hash == candidateHash && sameBoard(candidate, gameBoard)) {
+				period = candidatePeriod;
+				stableGeneration = generation;
+			}
+			candidatePeriod = 0;
+		}
+
+		if (period == 0 && candidatePeriod == 0) {
+			long known = Math.min(observed, maxPeriod);
+			for (int p = 1; p <= known; p++) {
+				int slot = (int) ((observed - p) % maxPeriod);
+				if (hashes[slot] != hash) {
+					continue;
+				}
+				if (p == 1 && previous != null) {
+					if (sameBoard(previous, gameBoard)) {
+						period = 1;
+						stableGeneration = generation;
+					}
+				} else {
+					keepCandidate(gameBoard, hash, p);
+				}
+				break;
+			}
+		}
+
+		hashes[(int) (observed % maxPeriod)] = hash;
+		observed++;
+		return period;
+	}
+
+	/**
+	 * Copies a board whose hash repeated, to compare with the board one period
+	 * later.
+	 *
+	 * @param gameBoard array of the game board
+	 * @param hash      the hash of the board
+	 * @param p         the period the hash repeated with
+	 */
+	private void keepCandidate(boolean[][] gameBoard, long hash, int p) {
+		if (candidate == null) {
+			candidate = new boolean[rows][columns];
+		}
+		for (int i = 0; i < rows; i++) {
+			System.arraycopy(gameBoard[i], 0, candidate[i], 0, columns);
+		}
+		candidateHash = hash;
+		candidateObserved = observed;
+		candidatePeriod = p;
+	}
+
+	/**
+	 * Compares two boards cell by cell.
+	 *
+	 * @param first  one board
+	 * @param second the other board
+	 * @return true if every cell is the same
+	 */
+	private boolean sameBoard(boolean[][] first, boolean[][] second) {
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				if (first[i][j] != second[i][j]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the game has settled.
+	 *
+	 * @return true if a repeat has been found
+	 */
+	public boolean isStable() {
+		return period > 0;
+	}
+
+	/**
+	 * Accessor for the period of the cycle.
+	 *
+	 * @return 1 for a still life, p for a cycle of length p, or 0 if the game has
+	 *         not repeated
+	 */
+	public int getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Accessor for when the cycle was found.
+	 *
+	 * @return the generation at which the repeat was confirmed: the first one to
+	 *         repeat its predecessor for a still life, and one period after the
+	 *         first repeated hash for longer cycles
+	 */
+	public long getStableGeneration() {
+		return stableGeneration;
+	}
+}
@@ -0,0 +1,416 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable snapshot of a BinarySearchTree, laid out in one array for fast
+ * reads.
+ *
+ * The elements are stored in Eytzinger (breadth-first) order: the root is at
+ * index 1 and the children of index k are at 2k and 2k + 1. A search is then a
+ * loop of k = 2k + (element < value), with no pointers to follow and no branch
+ * that depends on the data, and the first few levels that every search visits
+ * sit next to each other in memory. Integer and Long elements are stored in an
+ * int[] or long[], and Double elements in a long[] of bit patterns that sort
+ * the same way as the doubles, so searching them never touches a boxed object.
+ * Other elements are stored in an Object[] and compared with compareTo.
+ *
+ * @param <E> The type of element stored in the tree.
+ */
+public class FrozenBinarySearchTree<E extends Comparable<E>> implements Iterable<E> {
+
+	/** The largest number of elements whose indexes cannot overflow. */
+	private static final int MAX_SIZE = (Integer.MAX_VALUE - 1) / 2;
+
+	/** How the elements are stored. */
+	private enum Layout {
+		/** Integer elements in ints. */
+		INT,
+		/** Long elements in longs. */
+		LONG,
+		/** Double elements in longs, as sortable bits. */
+		DOUBLE,
+		/** Any other elements in objects. */
+		OBJECT
+	}
+
+	/** How the elements are stored. */
+	private final Layout layout;
+	/** The number of elements. */
+	private final int size;
+	/** The elements in Eytzinger order from index 1, for the INT layout. */
+	private int[] ints;
+	/** The elements in Eytzinger order from index 1, for LONG and DOUBLE. */
+	private long[] longs;
+	/** The elements in Eytzinger order from index 1, for the OBJECT layout. */
+	private Object[] objects;
+
+	/**
+	 * Takes a snapshot of a tree. Later changes to the tree do not affect it.
+	 *
+	 * @param tree The tree to copy.
+	 */
+	public FrozenBinarySearchTree(BinarySearchTree<E> tree) {
+		size = tree.size();
+		if (size > MAX_SIZE) {
+			throw new IllegalArgumentException("Tree is too large to freeze.");
+		}
+		E smallest = tree.min();
+		if (smallest instanceof Integer) {
+			layout = Layout.INT;
+			ints = new int[size + 1];
+		} else if (smallest instanceof Long) {
+			layout = Layout.LONG;
+			longs = new long[size + 1];
+		} else if (smallest instanceof Double) {
+			layout = Layout.DOUBLE;
+			longs = new long[size + 1];
+		} else {
+			layout = Layout.OBJECT;
+			objects = new Object[size + 1];
+		}
+		fill(1, tree.iterator());
+	}
+
+	/**
+	 * Stores the next elements of an in-order walk in a subtree of the array.
+	 * Visiting the array positions in in-order puts each element where a search
+	 * expects it.
+	 *
+	 * @param k      The index of the subtree's root.
+	 * @param sorted The elements, from smallest to largest.
+	 */
+	private void fill(int k, Iterator<E> sorted) {
+		if (k > size) {
+			return;
+		}
+		fill(2 * k, sorted);
+		E element = sorted.next();
+		switch (layout) {
+		case INT:
+			ints[k] = (Integer) element;
+			break;
+		case LONG:
+			longs[k] = (Long) element;
+			break;
+		case DOUBLE:
+			longs[k] = sortable((Double) element);
+			break;
+		default:
+			objects[k] = element;
+		}
+		fill(2 * k + 1, sorted);
+	}
+
+	/**
+	 * Turns a double into a long that sorts the same way Double.compareTo does:
+	 * negative numbers have their magnitude bits flipped so larger magnitudes
+	 * come first.
+	 *
+	 * @param value The double.
+	 * @return Its sortable bit pattern.
+	 */
+	private static long sortable(double value) {
+		long bits = Double.doubleToLongBits(value);
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+
+	/**
+	 * Turns a sortable bit pattern back into its double.
+	 *
+	 * @param bits The bit pattern made by sortable.
+	 * @return The double.
+	 */
+	private static double unsortable(long bits) {
+		return Double.longBitsToDouble(bits ^ ((bits >> 63) & Long.MAX_VALUE));
+	}
+
+	//// Searching ////
+
+	/**
+	 * Finds the first element that is at least a value.
+	 *
+	 * @param value The value to compare with.
+	 * @return The index of the smallest element >= value, or 0 if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	private int lowerBound(E value) {
+		int k = 1;
+		switch (layout) {
+		case INT:
+			int intKey = (Integer) value;
+			while (k <= size) {
+				k = 2 * k + (ints[k] < intKey ? 1 : 0);
+			}
+			break;
+		case LONG:
+		case DOUBLE:
+			long longKey = key(value);
+			while (k <= size) {
+				k = 2 * k + (longs[k] < longKey ? 1 : 0);
+			}
+			break;
+		default:
+			while (k <= size) {
+				k = 2 * k + (((E) objects[k]).compareTo(value) < 0 ? 1 : 0);
+			}
+		}
+		// The answer is the last place the search went left: drop the trailing
+		// right turns and that left turn
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+
+	/**
+	 * Finds the last element that is at most a value.
+	 *
+	 * @param value The value to compare with.
+	 * @return The index of the largest element <= value, or 0 if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	private int lastAtMost(E value) {
+		int k = 1;
+		switch (layout) {
+		case INT:
+			int intKey = (Integer) value;
+			while (k <= size) {
+				k = 2 * k + (ints[k] <= intKey ? 1 : 0);
+			}
+			break;
+		case LONG:
+		case DOUBLE:
+			long longKey = key(value);
+			while (k <= size) {
+				k = 2 * k + (longs[k] <= longKey ? 1 : 0);
+			}
+			break;
+		default:
+			while (k <= size) {
+				k = 2 * k + (((E) objects[k]).compareTo(value) <= 0 ? 1 : 0);
+			}
+		}
+		// The answer is the last place the search went right: drop the trailing
+		// left turns and that right turn
+		return k >>> (Integer.numberOfTrailingZeros(k) + 1);
+	}
+
+	/**
+	 * Converts a Long or Double to the value stored in longs.
+	 *
+	 * @param value The element.
+	 * @return Its key in longs.
+	 */
+	private long key(E value) {
+		return layout == Layout.DOUBLE ? sortable((Double) value) : (Long) value;
+	}
+
+	/**
+	 * Compares the element at an index with a value.
+	 *
+	 * @param k     The index.
+	 * @param value The value.
+	 * @return A negative number, zero or a positive number as the element is
+	 *         less than, equal to or greater than the value.
+	 */
+	@SuppressWarnings("unchecked")
+	private int compareAt(int k, E value) {
+		switch (layout) {
+		case INT:
+			return Integer.compare(ints[k], (Integer) value);
+		case LONG:
+		case DOUBLE:
+			return Long.compare(longs[k], key(value));
+		default:
+			return ((E) objects[k]).compareTo(value);
+		}
+	}
+
+	/**
+	 * Gets the element at an index, boxing it if it is stored as a primitive.
+	 *
+	 * @param k The index.
+	 * @return The element.
+	 */
+	@SuppressWarnings("unchecked")
+	private E elementAt(int k) {
+		switch (layout) {
+		case INT:
+			return (E) Integer.valueOf(ints[k]);
+		case LONG:
+			return (E) Long.valueOf(longs[k]);
+		case DOUBLE:
+			return (E) Double.valueOf(unsortable(longs[k]));
+		default:
+			return (E) objects[k];
+		}
+	}
+
+	/**
+	 * Finds the index of the next element in order.
+	 *
+	 * @param k The index of an element.
+	 * @return The index of the next larger element, or 0 if k is the largest.
+	 */
+	private int successor(int k) {
+		if (2 * k + 1 <= size) {
+			// the leftmost element of the right subtree
+			k = 2 * k + 1;
+			while (2 * k <= size) {
+				k = 2 * k;
+			}
+			return k;
+		}
+		// climb past every ancestor we are to the right of
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+
+	/**
+	 * Finds the index of the smallest element.
+	 *
+	 * @return The index of the leftmost element, or 0 if the snapshot is empty.
+	 */
+	private int first() {
+		if (size == 0) {
+			return 0;
+		}
+		int k = 1;
+		while (2 * k <= size) {
+			k = 2 * k;
+		}
+		return k;
+	}
+
+	//// Queries ////
+
+	/**
+	 * Gets the number of elements.
+	 *
+	 * @return The number of elements in the snapshot.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether or not the snapshot contains an element.
+	 *
+	 * @param value The element to look for.
+	 * @return True if the snapshot contains at least one copy of the element, or
+	 *         false.
+	 */
+	public boolean contains(E value) {
+		int k = lowerBound(value);
+		return k != 0 && compareAt(k, value) == 0;
+	}
+
+	/**
+	 * Finds the largest element less than or equal to a value.
+	 *
+	 * @param value The value to compare with (which need not be in the tree).
+	 * @return The largest element <= value, or null if there is none.
+	 */
+	public E floor(E value) {
+		int k = lastAtMost(value);
+		return k == 0 ? null : elementAt(k);
+	}
+
+	/**
+	 * Finds the smallest element greater than or equal to a value.
+	 *
+	 * @param value The value to compare with (which need not be in the tree).
+	 * @return The smallest element >= value, or null if there is none.
+	 */
+	public E ceiling(E value) {
+		int k = lowerBound(value);
+		return k == 0 ? null : elementAt(k);
+	}
+
+	/**
+	 * Finds the smallest element.
+	 *
+	 * @return The smallest element, or null if the snapshot is empty.
+	 */
+	public E min() {
+		int k = first();
+		return k == 0 ? null : elementAt(k);
+	}
+
+	/**
+	 * Finds the largest element.
+	 *
+	 * @return The largest element, or null if the snapshot is empty.
+	 */
+	public E max() {
+		if (size == 0) {
+			return null;
+		}
+		int k = 1;
+		while (2 * k + 1 <= size) {
+			k = 2 * k + 1;
+		}
+		return elementAt(k);
+	}
+
+	/**
+	 * Gets an iterator over all of the elements, from smallest to largest.
+	 *
+	 * @return An iterator over the elements in in-order.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new RangeIterator(first(), null);
+	}
+
+	/**
+	 * Gets an iterator over the elements in a range, from smallest to largest.
+	 * Finding the start is one search; each step after that is O(1) on average.
+	 *
+	 * @param lo The smallest value to include.
+	 * @param hi The largest value to include.
+	 * @return An iterator over the elements between lo and hi, inclusive.
+	 */
+	public Iterator<E> range(E lo, E hi) {
+		return new RangeIterator(lowerBound(lo), hi);
+	}
+
+	/**
+	 * Walks the array in in-order from a starting index.
+	 */
+	private class RangeIterator implements Iterator<E> {
+
+		/** The index of the next element, or 0 when there are no more. */
+		private int next;
+		/** The largest value to return, or null to go to the end. */
+		private E hi;
+
+		/**
+		 * Creates an iterator.
+		 *
+		 * @param start The index of the first element (0 for none).
+		 * @param hi    The largest value to return, or null for no limit.
+		 */
+		RangeIterator(int start, E hi) {
+			this.hi = hi;
+			next = start;
+			if (next != 0 && hi != null && compareAt(next, hi) > 0) {
+				next = 0;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != 0;
+		}
+
+		@Override
+		public E next() {
+			if (next == 0) {
+				throw new NoSuchElementException();
+			}
+			E element = elementAt(next);
+			next = successor(next);
+			if (next != 0 && hi != null && compareAt(next, hi) > 0) {
+				next = 0;
+			}
+			return element;
+		}
+	}
+}
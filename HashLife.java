@@ -0,0 +1,755 @@
+/**
+ * A Life engine that stores the board as a quadtree of shared, canonical nodes
+ * and remembers the future of every node it has computed (Hashlife).
+ *
+ * A node of level k covers a 2^k by 2^k square. Identical squares are stored
+ * once, and each node of level k can remember its center square 2^(k-2)
+ * generations later, so the engine can jump ahead by powers of two at a cost
+ * that depends on how repetitive the pattern is instead of on the number of
+ * generations.
+ *
+ * To keep the exact rules of Life.gameRound, every cell carries a "fixed" flag
+ * as well as its state. The outermost rows and columns of the board, and the
+ * empty space the quadtree needs around the board, are fixed and never change.
+ *
+ * Memory is bounded by a limit on the number of canonical nodes. When the
+ * table grows past that limit, every node that the current board does not use
+ * is evicted, along with all remembered futures. If that happens partway
+ * through a jump, the jump is abandoned and made again as two jumps of half
+ * the size.
+ */
+public class HashLife implements LifeEngine {
+
+	/** State of an empty cell that may change. */
+	private static final int DEAD = 0;
+	/** State of an occupied cell that may change. */
+	private static final int ALIVE = 1;
+	/** Flag set in the state of a cell that never changes. */
+	private static final int FIXED = 2;
+	/** State of an empty cell that never changes. */
+	private static final int FIXED_DEAD = FIXED | DEAD;
+	/** State of an occupied cell that never changes. */
+	private static final int FIXED_ALIVE = FIXED | ALIVE;
+
+	/** The smallest root level: a 4x4 square is the smallest that can be stepped. */
+	private static final int MIN_LEVEL = 3;
+	/** The largest single jump, so that coordinates fit in a long. */
+	private static final int MAX_POWER = 60;
+	/** The default limit on the number of canonical nodes. */
+	public static final int DEFAULT_MAX_NODES = 4000000;
+
+	/**
+	 * Thrown out of a jump that has made more nodes than the limit allows, so
+	 * that it can be made again in smaller pieces.
+	 */
+	private static class NodeLimitExceeded extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Constructs the exception without a stack trace, which is never used.
+		 */
+		NodeLimitExceeded() {
+			super(null, null, false, false);
+		}
+	}
+
+	/**
+	 * A square of the board. Nodes are never modified after they are built,
+	 * except for the remembered future.
+	 */
+	private static class Node {
+
+		/** The square covers 2^level cells on a side. */
+		private final int level;
+		/** The north-west quadrant, or null for a single cell. */
+		private final Node nw;
+		/** The north-east quadrant, or null for a single cell. */
+		private final Node ne;
+		/** The south-west quadrant, or null for a single cell. */
+		private final Node sw;
+		/** The south-east quadrant, or null for a single cell. */
+		private final Node se;
+		/** The state of a single cell (level 0 only). */
+		private final int state;
+		/** The number of occupied cells in the square. */
+		private final long population;
+		/** A number unique to this node, used for hashing its parents. */
+		private final int id;
+
+		/** The center square 2^(level-2) generations later, once known. */
+		private Node result;
+		/**
+		 * The center square 2^power generations later, indexed by power, for
+		 * powers below level-2. Made the first time a smaller jump needs it.
+		 */
+		private Node[] slower;
+		/** The next node in the same hash table bucket. */
+		private Node chain;
+
+		/**
+		 * Constructs a single cell.
+		 *
+		 * @param state the state of the cell
+		 * @param id    a number unique to this node
+		 */
+		Node(int state, int id) {
+			this.level = 0;
+			this.nw = null;
+			this.ne = null;
+			this.sw = null;
+			this.se = null;
+			this.state = state;
+			this.population = state & ALIVE;
+			this.id = id;
+		}
+
+		/**
+		 * Constructs a square out of four smaller squares.
+		 *
+		 * @param nw the north-west quadrant
+		 * @param ne the north-east quadrant
+		 * @param sw the south-west quadrant
+		 * @param se the south-east quadrant
+		 * @param id a number unique to this node
+		 */
+		Node(Node nw, Node ne, Node sw, Node se, int id) {
+			this.level = nw.level + 1;
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			this.state = 0;
+			this.population = nw.population + ne.population + sw.population + se.population;
+			this.id = id;
+		}
+	}
+
+	/** The number of rows on the board. */
+	private int rows;
+	/** The number of columns on the board. */
+	private int columns;
+	/** The birth and survival ranges. */
+	private LifeRule rule;
+
+	/** The single cells, indexed by state. */
+	private Node[] cells;
+	/** Squares made entirely of fixed empty cells, indexed by level. */
+	private Node[] walls;
+	/** The canonical table of every node above level 0. */
+	private Node[] table;
+	/** The number of nodes in the table. */
+	private int nodeCount;
+	/** The next unused node id. */
+	private int nextId;
+	/** The table is collected when it grows past this many nodes. */
+	private int maxNodes;
+
+	/** The square holding the whole board. */
+	private Node root;
+	/** The row and column within the root of the board's top-left cell. */
+	private long offset;
+	/** True while a jump is running that can be split if it makes too many nodes. */
+	private boolean splittable;
+	/** The number of generations computed so far. */
+	private long generation;
+
+	/** The number of futures found already remembered. */
+	private long cacheHits;
+	/** The number of futures that had to be computed. */
+	private long cacheMisses;
+	/** The number of times unused nodes were evicted. */
+	private long collections;
+
+	/**
+	 * Constructs an engine holding a copy of an existing game board.
+	 *
+	 * @param gameBoard array of the game board, as made by Life.getMatrix
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param rule      the birth and survival ranges
+	 */
+	public HashLife(boolean[][] gameBoard, int r, int c, LifeRule rule) {
+		this(gameBoard, r, c, rule, DEFAULT_MAX_NODES);
+	}
+
+	/**
+	 * Constructs an engine holding a copy of an existing game board.
+	 *
+	 * @param gameBoard array of the game board, as made by Life.getMatrix
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param rule      the birth and survival ranges
+	 * @param maxNodes  the number of canonical nodes above which unused nodes are
+	 *                  evicted
+	 */
+	public HashLife(boolean[][] gameBoard, int r, int c, LifeRule rule, int maxNodes) {
+		rows = r;
+		columns = c;
+		this.rule = rule;
+		setMaxNodes(maxNodes);
+
+		cells = new Node[4];
+		for (int state = 0; state < 4; state++) {
+			cells[state] = new Node(state, state);
+		}
+		nextId = 4;
+		table = new Node[1 << 16];
+		walls = new Node[MAX_POWER + 4];
+		walls[0] = cells[FIXED_DEAD];
+
+		// The board must fit in the center half of the root
+		int level = MIN_LEVEL;
+		while ((1L << (level - 1)) < Math.max(r, c)) {
+			level++;
+		}
+		offset = 1L << (level - 2);
+		root = build(gameBoard, level, -offset, -offset);
+	}
+
+	/**
+	 * Seeds a board the same way Life.getMatrix does.
+	 *
+	 * @param r    number of rows
+	 * @param c    number of columns
+	 * @param s    random seed
+	 * @param rule the birth and survival ranges
+	 * @return a new engine holding the seeded board
+	 */
+	public static HashLife fromSeed(int r, int c, long s, LifeRule rule) {
+		return new HashLife(Life.getMatrix(r, c, s), r, c, rule);
+	}
+
+	/**
+	 * Builds the square of a board whose top-left corner is at a given position.
+	 *
+	 * @param gameBoard array of the game board
+	 * @param level     the level of the square
+	 * @param top       the board row of the square's top edge
+	 * @param left      the board column of the square's left edge
+	 * @return the canonical node for that square
+	 */
+	private Node build(boolean[][] gameBoard, int level, long top, long left) {
+		long size = 1L << level;
+		if (top >= rows || left >= columns || top + size <= 0 || left + size <= 0) {
+			return wall(level);
+		}
+		if (level == 0) {
+			boolean alive = gameBoard[(int) top][(int) left];
+			if (top == 0 || left == 0 || top == rows - 1 || left == columns - 1) {
+				return cells[alive ? FIXED_ALIVE : FIXED_DEAD];
+			}
+			return cells[alive ? ALIVE : DEAD];
+		}
+		long half = size / 2;
+		return join(build(gameBoard, level - 1, top, left), build(gameBoard, level - 1, top, left + half),
+				build(gameBoard, level - 1, top + half, left), build(gameBoard, level - 1, top + half, left + half));
+	}
+
+	/**
+	 * Gets a square made entirely of fixed empty cells.
+	 *
+	 * @param level the level of the square
+	 * @return the canonical node for that square
+	 */
+	private Node wall(int level) {
+		if (walls[level] == null) {
+			Node smaller = wall(level - 1);
+			walls[level] = join(smaller, smaller, smaller, smaller);
+		}
+		return walls[level];
+	}
+
+	/**
+	 * Finds or creates the canonical node made of four quadrants.
+	 *
+	 * @param nw the north-west quadrant
+	 * @param ne the north-east quadrant
+	 * @param sw the south-west quadrant
+	 * @param se the south-east quadrant
+	 * @return the one node with exactly those quadrants
+	 */
+	private Node join(Node nw, Node ne, Node sw, Node se) {
+		int bucket = hash(nw, ne, sw, se) & (table.length - 1);
+		for (Node node = table[bucket]; node != null; node = node.chain) {
+			if (node.nw == nw && node.ne == ne && node.sw == sw && node.se == se) {
+				return node;
+			}
+		}
+		Node node = new Node(nw, ne, sw, se, nextId++);
+		node.chain = table[bucket];
+		table[bucket] = node;
+		nodeCount++;
+		if (nodeCount > table.length - table.length / 4) {
+			resize(table.length * 2);
+		}
+		return node;
+	}
+
+	/**
+	 * Combines the ids of four quadrants.
+	 *
+	 * @param nw the north-west quadrant
+	 * @param ne the north-east quadrant
+	 * @param sw the south-west quadrant
+	 * @param se the south-east quadrant
+	 * @return a well-mixed hash of the four
+	 */
+	private static int hash(Node nw, Node ne, Node sw, Node se) {
+		int h = nw.id;
+		h = h * 0x9E3779B1 + ne.id;
+		h = h * 0x9E3779B1 + sw.id;
+		h = h * 0x9E3779B1 + se.id;
+		return h ^ (h >>> 15);
+	}
+
+	/**
+	 * Moves every node into a table with a different number of buckets.
+	 *
+	 * @param buckets the new number of buckets, a power of two
+	 */
+	private void resize(int buckets) {
+		Node[] old = table;
+		table = new Node[buckets];
+		for (Node head : old) {
+			Node node = head;
+			while (node != null) {
+				Node following = node.chain;
+				int bucket = hash(node.nw, node.ne, node.sw, node.se) & (buckets - 1);
+				node.chain = table[bucket];
+				table[bucket] = node;
+				node = following;
+			}
+		}
+	}
+
+	/**
+	 * Evicts every node the current board does not use and forgets every
+	 * remembered future.
+	 */
+	public void collectGarbage() {
+		table = new Node[table.length];
+		nodeCount = 0;
+		walls = new Node[walls.length];
+		walls[0] = cells[FIXED_DEAD];
+		keep(root);
+		collections++;
+	}
+
+	/**
+	 * Puts a node and everything below it back into the table.
+	 *
+	 * @param node the node to keep
+	 */
+	private void keep(Node node) {
+		if (node.level == 0) {
+			return;
+		}
+		int bucket = hash(node.nw, node.ne, node.sw, node.se) & (table.length - 1);
+		for (Node other = table[bucket]; other != null; other = other.chain) {
+			if (other == node) {
+				return;
+			}
+		}
+		keep(node.nw);
+		keep(node.ne);
+		keep(node.sw);
+		keep(node.se);
+		node.result = null;
+		node.slower = null;
+		node.chain = table[bucket];
+		table[bucket] = node;
+		nodeCount++;
+	}
+
+	/**
+	 * Forgets every remembered future without evicting any nodes.
+	 */
+	public void clearCache() {
+		for (Node head : table) {
+			for (Node node = head; node != null; node = node.chain) {
+				node.result = null;
+				node.slower = null;
+			}
+		}
+	}
+
+	/**
+	 * Sets the number of canonical nodes above which unused nodes are evicted.
+	 *
+	 * @param maxNodes the new limit, which must be positive
+	 */
+	public void setMaxNodes(int maxNodes) {
+		if (maxNodes <= 0) {
+			throw new IllegalArgumentException("The node limit must be positive.");
+		}
+		this.maxNodes = maxNodes;
+	}
+
+	/**
+	 * Accessor for the node limit.
+	 *
+	 * @return the number of canonical nodes above which unused nodes are evicted
+	 */
+	public int getMaxNodes() {
+		return maxNodes;
+	}
+
+	/**
+	 * Accessor for the size of the node table.
+	 *
+	 * @return the number of canonical nodes currently stored
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Accessor for the number of remembered futures that were reused.
+	 *
+	 * @return the number of cache hits so far
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * Accessor for the number of futures that had to be computed.
+	 *
+	 * @return the number of cache misses so far
+	 */
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+
+	/**
+	 * Accessor for the number of evictions.
+	 *
+	 * @return the number of times unused nodes were evicted
+	 */
+	public long getCollections() {
+		return collections;
+	}
+
+	@Override
+	public void step() {
+		jump(0);
+	}
+
+	/**
+	 * Advances the board by some number of generations.
+	 *
+	 * @param generations the number of generations to advance, which may not be
+	 *                    negative
+	 */
+	public void advance(long generations) {
+		if (generations < 0) {
+			throw new IllegalArgumentException("Cannot advance a negative number of generations.");
+		}
+		while (generations >= (1L << MAX_POWER) << 1) {
+			jump(MAX_POWER);
+			generations -= 1L << MAX_POWER;
+		}
+		for (int power = 0; generations != 0; power++) {
+			if ((generations & 1) != 0) {
+				jump(power);
+			}
+			generations >>>= 1;
+		}
+	}
+
+	/**
+	 * Advances the board to a later generation.
+	 *
+	 * @param target the generation to reach, which may not be earlier than the
+	 *               current one
+	 */
+	public void advanceTo(long target) {
+		advance(target - generation);
+	}
+
+	/**
+	 * Advances the board by a power of two generations.
+	 *
+	 * @param power the jump is 2^power generations
+	 */
+	private void jump(int power) {
+		if (nodeCount > maxNodes) {
+			collectGarbage();
+		}
+		while (root.level < power + 2) {
+			expand();
+		}
+
+		// A single generation cannot be split, and if the board alone is over
+		// the limit splitting would not help, so those jumps may go over it
+		Node next;
+		splittable = power > 0 && nodeCount <= maxNodes;
+		try {
+			next = successor(root, power);
+		} catch (NodeLimitExceeded e) {
+			collectGarbage();
+			jump(power - 1);
+			jump(power - 1);
+			return;
+		} finally {
+			splittable = false;
+		}
+
+		// The result is the center half of the root; surround it with fixed cells
+		// again so the board stays at the same offset
+		root = next;
+		offset -= 1L << (root.level - 1);
+		expand();
+		generation += 1L << power;
+	}
+
+	/**
+	 * Doubles the size of the root, keeping the board in the center.
+	 */
+	private void expand() {
+		Node border = wall(root.level - 1);
+		root = join(join(border, border, border, root.nw), join(border, border, root.ne, border),
+				join(border, root.sw, border, border), join(root.se, border, border, border));
+		offset += 1L << (root.level - 2);
+	}
+
+	/**
+	 * Computes the center of a square some number of generations later.
+	 *
+	 * @param node  a node of level k, at least 2
+	 * @param power the number of generations is 2^power, at most 2^(k-2)
+	 * @return the node of level k-1 at the center of node after 2^power
+	 *         generations
+	 * @throws NodeLimitExceeded if the node table grows past the limit during a
+	 *                           jump that can be split
+	 */
+	private Node successor(Node node, int power) {
+		boolean full = power == node.level - 2;
+		Node known = full ? node.result : node.slower == null ? null : node.slower[power];
+		if (known != null) {
+			cacheHits++;
+			return known;
+		}
+		cacheMisses++;
+		if (splittable && nodeCount > maxNodes) {
+			throw new NodeLimitExceeded();
+		}
+
+		Node result;
+		if (node.level == 2) {
+			result = stepSmall(node);
+		} else {
+			int k = node.level;
+			Node n00 = node.nw;
+			Node n01 = horizontal(node.nw, node.ne);
+			Node n02 = node.ne;
+			Node n10 = vertical(node.nw, node.sw);
+			Node n11 = center(node);
+			Node n12 = vertical(node.ne, node.se);
+			Node n20 = node.sw;
+			Node n21 = horizontal(node.sw, node.se);
+			Node n22 = node.se;
+
+			if (power < k - 2) {
+				// Only the second half of the work moves forward in time
+				Node c00 = join(center(n00), center(n01), center(n10), center(n11));
+				Node c01 = join(center(n01), center(n02), center(n11), center(n12));
+				Node c10 = join(center(n10), center(n11), center(n20), center(n21));
+				Node c11 = join(center(n11), center(n12), center(n21), center(n22));
+				result = join(successor(c00, power), successor(c01, power), successor(c10, power),
+						successor(c11, power));
+			} else {
+				Node r00 = successor(n00, power - 1);
+				Node r01 = successor(n01, power - 1);
+				Node r02 = successor(n02, power - 1);
+				Node r10 = successor(n10, power - 1);
+				Node r11 = successor(n11, power - 1);
+				Node r12 = successor(n12, power - 1);
+				Node r20 = successor(n20, power - 1);
+				Node r21 = successor(n21, power - 1);
+				Node r22 = successor(n22, power - 1);
+				result = join(successor(join(r00, r01, r10, r11), power - 1),
+						successor(join(r01, r02, r11, r12), power - 1),
+						successor(join(r10, r11, r20, r21), power - 1),
+						successor(join(r11, r12, r21, r22), power - 1));
+			}
+		}
+		if (full) {
+			node.result = result;
+		} else {
+			if (node.slower == null) {
+				node.slower = new Node[node.level - 2];
+			}
+			node.slower[power] = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the center of a square.
+	 *
+	 * @param node a node of level k, at least 2
+	 * @return the node of level k-1 at its center
+	 */
+	private Node center(Node node) {
+		return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+	}
+
+	/**
+	 * Gets the square straddling two side-by-side squares.
+	 *
+	 * @param west the left square
+	 * @param east the right square
+	 * @return the node of the same level centered on their shared edge
+	 */
+	private Node horizontal(Node west, Node east) {
+		return join(west.ne, east.nw, west.se, east.sw);
+	}
+
+	/**
+	 * Gets the square straddling two stacked squares.
+	 *
+	 * @param north the upper square
+	 * @param south the lower square
+	 * @return the node of the same level centered on their shared edge
+	 */
+	private Node vertical(Node north, Node south) {
+		return join(north.sw, north.se, south.nw, south.ne);
+	}
+
+	/**
+	 * Computes the center 2x2 cells of a 4x4 square one generation later.
+	 *
+	 * @param node a node of level 2
+	 * @return the node of level 1 at its center, one generation later
+	 */
+	private Node stepSmall(Node node) {
+		int[][] grid = new int[4][4];
+		fill(grid, node, 0, 0);
+		Node[] center = new Node[4];
+		for (int i = 1; i <= 2; i++) {
+			for (int j = 1; j <= 2; j++) {
+				int state = grid[i][j];
+				if ((state & FIXED) == 0) {
+					int neighborCount = 0;
+					for (int di = -1; di <= 1; di++) {
+						for (int dj = -1; dj <= 1; dj++) {
+							neighborCount += grid[i + di][j + dj] & ALIVE;
+						}
+					}
+					state = rule.nextState((state & ALIVE) != 0, neighborCount) ? ALIVE : DEAD;
+				}
+				center[(i - 1) * 2 + (j - 1)] = cells[state];
+			}
+		}
+		return join(center[0], center[1], center[2], center[3]);
+	}
+
+	/**
+	 * Copies the cell states of a small square into a grid.
+	 *
+	 * @param grid the grid to fill
+	 * @param node the square to copy
+	 * @param top  the row of the grid for the square's top edge
+	 * @param left the column of the grid for the square's left edge
+	 */
+	private static void fill(int[][] grid, Node node, int top, int left) {
+		if (node.level == 0) {
+			grid[top][left] = node.state;
+		} else {
+			int half = 1 << (node.level - 1);
+			fill(grid, node.nw, top, left);
+			fill(grid, node.ne, top, left + half);
+			fill(grid, node.sw, top + half, left);
+			fill(grid, node.se, top + half, left + half);
+		}
+	}
+
+	@Override
+	public boolean isAlive(int row, int column) {
+		Node node = root;
+		long top = offset + row;
+		long left = offset + column;
+		while (node.level > 0) {
+			long half = 1L << (node.level - 1);
+			if (top < half) {
+				node = left < half ? node.nw : node.ne;
+			} else {
+				node = left < half ? node.sw : node.se;
+				top -= half;
+			}
+			if (left >= half) {
+				left -= half;
+			}
+		}
+		return (node.state & ALIVE) != 0;
+	}
+
+	/**
+	 * Copies a rectangle of the board.
+	 *
+	 * @param top    the first row of the rectangle
+	 * @param left   the first column of the rectangle
+	 * @param height the number of rows in the rectangle
+	 * @param width  the number of columns in the rectangle
+	 * @return a new array where element [i][j] is cell (top + i, left + j)
+	 */
+	public boolean[][] getRegion(int top, int left, int height, int width) {
+		boolean[][] region = new boolean[height][width];
+		if (height > 0 && width > 0) {
+			copyRegion(region, root, -offset - top, -offset - left);
+		}
+		return region;
+	}
+
+	/**
+	 * Copies the occupied cells of a square into a region.
+	 *
+	 * @param region the region being filled
+	 * @param node   the square to copy
+	 * @param top    the row of the square's top edge, relative to the region
+	 * @param left   the column of the square's left edge, relative to the region
+	 */
+	private void copyRegion(boolean[][] region, Node node, long top, long left) {
+		long size = 1L << node.level;
+		if (node.population == 0 || top >= region.length || left >= region[0].length || top + size <= 0
+				|| left + size <= 0) {
+			return;
+		}
+		if (node.level == 0) {
+			region[(int) top][(int) left] = true;
+		} else {
+			long half = size / 2;
+			copyRegion(region, node.nw, top, left);
+			copyRegion(region, node.ne, top, left + half);
+			copyRegion(region, node.sw, top + half, left);
+			copyRegion(region, node.se, top + half, left + half);
+		}
+	}
+
+	@Override
+	public int getRows() {
+		return rows;
+	}
+
+	@Override
+	public int getColumns() {
+		return columns;
+	}
+
+	@Override
+	public long getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public long getPopulation() {
+		return root.population;
+	}
+
+	@Override
+	public boolean[][] toMatrix() {
+		return getRegion(0, 0, rows, columns);
+	}
+}
@@ -0,0 +1,142 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many games of Life in one program, for sweeping seeds and rules.
+ *
+ * Each line of the configuration file describes one game:
+ *
+ * rows columns seed minB maxB minS maxS [generations]
+ *
+ * Blank lines and lines starting with # are ignored. Games run concurrently on
+ * a fixed number of worker threads, and each worker reuses one BufferedLife
+ * for every game it runs. Nothing is printed; instead one summary line per game
+ * is written to the results file, in the same order as the configurations:
+ *
+ * rows columns seed minB maxB minS maxS generations population milliseconds
+ */
+public class LifeBatch {
+
+	/** Number of generations to run when a line does not say. */
+	private static final int DEFAULT_GENERATIONS = 100;
+
+	/** The engine each worker thread reuses. */
+	private static final ThreadLocal<BufferedLife> ENGINES = new ThreadLocal<BufferedLife>();
+
+	/**
+	 * The settings for one game.
+	 */
+	private static class Config {
+
+		/** The number of rows on the board. */
+		private int rows;
+		/** The number of columns on the board. */
+		private int columns;
+		/** The random seed for the board. */
+		private long seed;
+		/** The birth and survival ranges. */
+		private LifeRule rule;
+		/** The number of generations to run. */
+		private long generations;
+
+		/**
+		 * Parses one line of the configuration file.
+		 *
+		 * @param line               the line
+		 * @param defaultGenerations the number of generations if the line does
+		 *                           not say
+		 */
+		Config(String line, long defaultGenerations) {
+			String[] fields = line.trim().split("\\s+");
+			if (fields.length != 7 && fields.length != 8) {
+				throw new IllegalArgumentException("Expected 7 or 8 numbers: " + line);
+			}
+			rows = Integer.parseInt(fields[0]);
+			columns = Integer.parseInt(fields[1]);
+			seed = Long.parseLong(fields[2]);
+			rule = new LifeRule(Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+					Integer.parseInt(fields[5]), Integer.parseInt(fields[6]));
+			generations = fields.length == 8 ? Long.parseLong(fields[7]) : defaultGenerations;
+		}
+	}
+
+	/**
+	 * Runs every game in a configuration file.
+	 *
+	 * @param args the configuration file, the results file, and optional
+	 *             threads=N and generations=N settings
+	 * @throws IOException          if a file cannot be read or written
+	 * @throws InterruptedException if the program is interrupted while waiting
+	 *                              for a game
+	 * @throws ExecutionException   if a game fails
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		if (args.length < 2) {
+			System.err.println("Usage: java LifeBatch configs.txt results.txt [threads=N] [generations=N]");
+			return;
+		}
+		int threads = (int) Life.option(args, "threads", Runtime.getRuntime().availableProcessors());
+		long defaultGenerations = Life.option(args, "generations", DEFAULT_GENERATIONS);
+
+		List<Config> configs = new ArrayList<Config>();
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isBlank() && !line.trim().startsWith("#")) {
+					configs.add(new Config(line, defaultGenerations));
+				}
+			}
+		}
+
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(args[1]))) {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (Config config : configs) {
+				results.add(workers.submit(() -> run(config)));
+			}
+			for (Future<String> result : results) {
+				writer.write(result.get());
+				writer.newLine();
+			}
+		} finally {
+			workers.shutdown();
+		}
+	}
+
+	/**
+	 * Runs one game on the calling worker's engine.
+	 *
+	 * @param config the settings for the game
+	 * @return the summary line for the game
+	 */
+	private static String run(Config config) {
+		long start = System.nanoTime();
+
+		BufferedLife life = ENGINES.get();
+		if (life == null) {
+			life = new BufferedLife(Life.getMatrix(config.rows, config.columns, config.seed), config.rows,
+					config.columns, config.rule);
+			ENGINES.set(life);
+		} else {
+			life.reseed(config.rows, config.columns, config.seed, config.rule);
+		}
+
+		while (life.getGeneration() < config.generations) {
+			life.step();
+		}
+		long population = life.getPopulation();
+		long elapsed = (System.nanoTime() - start) / 1000000;
+
+		return config.rows + " " + config.columns + " " + config.seed + " " + config.rule + " "
+				+ life.getGeneration() + " " + population + " " + elapsed;
+	}
+}
@@ -0,0 +1,258 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves and restores Life boards in a compact binary file.
+ *
+ * A checkpoint starts with a fixed header:
+ *
+ * magic "LIFE", format version, rows, columns, minB, maxB, minS, maxS (all
+ * little-endian ints), then the generation number (a little-endian long).
+ *
+ * After the header come the cells, one bit each, row by row, packed into
+ * little-endian longs (bit j of a word is the cell 64 * word + j columns into
+ * the row; every row starts on a new word). Files are read and written through
+ * memory-mapped FileChannel regions, one region per group of rows, so even
+ * multi-gigabyte boards are copied without going through small stream buffers.
+ * A checkpoint is written to a temporary file and renamed into place, so a
+ * crash in the middle never leaves a half-written checkpoint behind.
+ */
+public class LifeCheckpoint {
+
+	/** The first four bytes of every checkpoint, which spell "LIFE" on disk. */
+	private static final int MAGIC = 0x4546494C;
+	/** The version of the format described above. */
+	private static final int VERSION = 1;
+	/** The number of bytes before the cells start. */
+	public static final int HEADER_BYTES = 8 * Integer.BYTES + Long.BYTES;
+	/** The most bytes mapped at once. */
+	private static final long MAX_REGION = 1L << 28;
+
+	/** The number of rows on the board. */
+	private int rows;
+	/** The number of columns on the board. */
+	private int columns;
+	/** The birth and survival ranges. */
+	private LifeRule rule;
+	/** The generation the board was saved at. */
+	private long generation;
+	/** The board. */
+	private boolean[][] board;
+
+	/**
+	 * Constructs a checkpoint in memory.
+	 *
+	 * @param gameBoard  array of the game board
+	 * @param r          number of rows
+	 * @param c          number of columns
+	 * @param rule       the birth and survival ranges
+	 * @param generation the generation the board is at
+	 */
+	public LifeCheckpoint(boolean[][] gameBoard, int r, int c, LifeRule rule, long generation) {
+		this.board = gameBoard;
+		this.rows = r;
+		this.columns = c;
+		this.rule = rule;
+		this.generation = generation;
+	}
+
+	/**
+	 * Writes a board to a checkpoint file, replacing any existing one.
+	 *
+	 * @param file       the checkpoint file
+	 * @param gameBoard  array of the game board
+	 * @param r          number of rows
+	 * @param c          number of columns
+	 * @param rule       the birth and survival ranges
+	 * @param generation the generation the board is at
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(Path file, boolean[][] gameBoard, int r, int c, LifeRule rule, long generation)
+			throws IOException {
+		int words = wordsPerRow(c);
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(r).putInt(c);
+			header.putInt(rule.getMinBirth()).putInt(rule.getMaxBirth());
+			header.putInt(rule.getMinSurvive()).putInt(rule.getMaxSurvive());
+			header.putLong(generation);
+			header.force();
+
+			int rowsPerRegion = rowsPerRegion(words);
+			for (int first = 0; first < r; first += rowsPerRegion) {
+				int last = Math.min(r, first + rowsPerRegion);
+				long offset = HEADER_BYTES + (long) first * words * Long.BYTES;
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, offset,
+						(long) (last - first) * words * Long.BYTES);
+				region.order(ByteOrder.LITTLE_ENDIAN);
+				for (int i = first; i < last; i++) {
+					packRow(region, gameBoard[i], c);
+				}
+				region.force();
+			}
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Writes one row of cells as packed words.
+	 *
+	 * @param region the buffer to write into
+	 * @param row    the row of the board
+	 * @param c      number of columns
+	 */
+	private static void packRow(MappedByteBuffer region, boolean[] row, int c) {
+		for (int start = 0; start < c; start += Long.SIZE) {
+			long word = 0;
+			int end = Math.min(c, start + Long.SIZE);
+			for (int j = start; j < end; j++) {
+				if (row[j]) {
+					word |= 1L << (j - start);
+				}
+			}
+			region.putLong(word);
+		}
+	}
+
+	/**
+	 * Reads a checkpoint file.
+	 *
+	 * @param file the checkpoint file
+	 * @return the board, rule and generation that were saved
+	 * @throws IOException if the file cannot be read or is not a checkpoint
+	 */
+	public static LifeCheckpoint read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_BYTES) {
+				throw new IOException("Not a Life checkpoint: " + file);
+			}
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Not a Life checkpoint: " + file);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported checkpoint version " + version + ": " + file);
+			}
+			int r = header.getInt();
+			int c = header.getInt();
+			if (r < 0 || c < 0) {
+				throw new IOException("Checkpoint is truncated or corrupt: " + file);
+			}
+			LifeRule rule = new LifeRule(header.getInt(), header.getInt(), header.getInt(), header.getInt());
+			long generation = header.getLong();
+
+			int words = wordsPerRow(c);
+			if (channel.size() != HEADER_BYTES + (long) r * words * Long.BYTES) {
+				throw new IOException("Checkpoint is truncated or corrupt: " + file);
+			}
+
+			boolean[][] gameBoard = new boolean[r][c];
+			int rowsPerRegion = rowsPerRegion(words);
+			for (int first = 0; first < r; first += rowsPerRegion) {
+				int last = Math.min(r, first + rowsPerRegion);
+				long offset = HEADER_BYTES + (long) first * words * Long.BYTES;
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+						(long) (last - first) * words * Long.BYTES);
+				region.order(ByteOrder.LITTLE_ENDIAN);
+				for (int i = first; i < last; i++) {
+					unpackRow(region, gameBoard[i], c);
+				}
+			}
+			return new LifeCheckpoint(gameBoard, r, c, rule, generation);
+		}
+	}
+
+	/**
+	 * Reads one row of cells from packed words.
+	 *
+	 * @param region the buffer to read from
+	 * @param row    the row of the board to fill
+	 * @param c      number of columns
+	 */
+	private static void unpackRow(MappedByteBuffer region, boolean[] row, int c) {
+		for (int start = 0; start < c; start += Long.SIZE) {
+			long word = region.getLong();
+			int end = Math.min(c, start + Long.SIZE);
+			for (int j = start; j < end; j++) {
+				row[j] = (word & (1L << (j - start))) != 0;
+			}
+		}
+	}
+
+	/**
+	 * Finds the number of words a row takes.
+	 *
+	 * @param c number of columns
+	 * @return the number of longs needed for one row
+	 */
+	private static int wordsPerRow(int c) {
+		return (c + Long.SIZE - 1) / Long.SIZE;
+	}
+
+	/**
+	 * Finds how many rows fit in one mapped region.
+	 *
+	 * @param words the number of longs in one row
+	 * @return the number of rows to map at once (at least one)
+	 */
+	private static int rowsPerRegion(int words) {
+		return (int) Math.max(1, MAX_REGION / Math.max(1, (long) words * Long.BYTES));
+	}
+
+	/**
+	 * Accessor for the board.
+	 *
+	 * @return the saved board
+	 */
+	public boolean[][] getBoard() {
+		return board;
+	}
+
+	/**
+	 * Accessor for the number of rows.
+	 *
+	 * @return the number of rows on the board
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Accessor for the number of columns.
+	 *
+	 * @return the number of columns on the board
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Accessor for the rule.
+	 *
+	 * @return the birth and survival ranges that were saved
+	 */
+	public LifeRule getRule() {
+		return rule;
+	}
+
+	/**
+	 * Accessor for the generation.
+	 *
+	 * @return the generation the board was saved at
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * A way of storing and advancing a game of Life board.
+ * 
+ * Every engine follows the same rules as Life.gameRound: only the interior
+ * cells are updated, and the outermost rows and columns keep whatever value
+ * they started with.
+ */
+public interface LifeEngine {
+
+	/**
+	 * Advances the board by one generation.
+	 */
+	public abstract void step();
+
+	/**
+	 * Checks whether a cell is occupied.
+	 * 
+	 * @param row    the row of the cell
+	 * @param column the column of the cell
+	 * @return true if the cell is occupied
+	 */
+	public abstract boolean isAlive(int row, int column);
+
+	/**
+	 * Accessor for the number of rows.
+	 * 
+	 * @return the number of rows on the board
+	 */
+	public abstract int getRows();
+
+	/**
+	 * Accessor for the number of columns.
+	 * 
+	 * @return the number of columns on the board
+	 */
+	public abstract int getColumns();
+
+	/**
+	 * Accessor for the number of generations computed so far.
+	 * 
+	 * @return the number of calls to step since the engine was created
+	 */
+	public abstract long getGeneration();
+
+	/**
+	 * Counts the occupied cells on the board.
+	 * 
+	 * @return the live population
+	 */
+	public abstract long getPopulation();
+
+	/**
+	 * Copies the board into the same layout Life.getMatrix produces.
+	 * 
+	 * @return a new array holding the current generation
+	 */
+	public abstract boolean[][] toMatrix();
+}
@@ -0,0 +1,164 @@
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.FixMethodOrder;
+
+/*
+ * You must include the Junit4 library to use this test unit.
+ *
+ * To add it, select the project and then choose Properties... from the File menu.
+ * Click on "Java Build Path" in the panel at the left.
+ * Select Libraries from the list at the top.
+ * Select Add Library... from the right side of the panel.
+ * Select JUnit and click on Next.
+ * Change the version to JUnit 4 and click on Finish.
+ * Click on OK in the properties panel.
+ *
+ * You can then run these tests using "Run As JUnit Test" instead of "Runs As Java Application".
+ */
+
+/**
+ * JUnit tests that check every board engine against Life.gameRound.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LifeEngineTests {
+
+	/** The number of generations each engine is stepped. */
+	private static final int GENERATIONS = 12;
+	/** The number of random boards and rules each test tries. */
+	private static final int TRIALS = 40;
+
+	/**
+	 * Makes a random board, with live cells on the border as well as inside.
+	 *
+	 * @param rand the random number generator
+	 * @param r    number of rows
+	 * @param c    number of columns
+	 * @return the board
+	 */
+	private static boolean[][] randomBoard(Random rand, int r, int c) {
+		boolean[][] board = new boolean[r][c];
+		for (int i = 0; i < r; i++) {
+			for (int j = 0; j < c; j++) {
+				board[i][j] = rand.nextInt(3) == 0;
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Makes a random rule, with ranges anywhere from 0 to 9 neighbors.
+	 *
+	 * @param rand the random number generator
+	 * @return the four ends of the birth and survival ranges
+	 */
+	private static int[] randomRule(Random rand) {
+		int minB = rand.nextInt(LifeRule.MAX_COUNT + 1);
+		int maxB = minB + rand.nextInt(LifeRule.MAX_COUNT + 1 - minB);
+		int minS = rand.nextInt(LifeRule.MAX_COUNT + 1);
+		int maxS = minS + rand.nextInt(LifeRule.MAX_COUNT + 1 - minS);
+		return new int[] { minB, maxB, minS, maxS };
+	}
+
+	/**
+	 * Creates the engine being tested.
+	 */
+	private interface EngineFactory {
+		/**
+		 * Creates an engine holding a copy of a board.
+		 *
+		 * @param gameBoard array of the game board
+		 * @param r         number of rows
+		 * @param c         number of columns
+		 * @param rule      the birth and survival ranges
+		 * @return the engine
+		 */
+		LifeEngine create(boolean[][] gameBoard, int r, int c, LifeRule rule);
+	}
+
+	/**
+	 * Steps an engine and Life.gameRound side by side on random boards and rules,
+	 * checking that every cell agrees after every generation.
+	 *
+	 * @param name    the engine's name, for messages
+	 * @param factory creates the engine
+	 * @param minSize the fewest rows and columns to try
+	 * @param maxSize the most rows and columns to try
+	 */
+	private static void checkEngine(String name, EngineFactory factory, int minSize, int maxSize) {
+		Random rand = new Random(name.hashCode());
+		for (int trial = 0; trial < TRIALS; trial++) {
+			int r = minSize + rand.nextInt(maxSize - minSize + 1);
+			int c = minSize + rand.nextInt(maxSize - minSize + 1);
+			int[] ranges = randomRule(rand);
+			boolean[][] expected = randomBoard(rand, r, c);
+			LifeEngine engine = factory.create(expected, r, c,
+					new LifeRule(ranges[0], ranges[1], ranges[2], ranges[3]));
+			for (int g = 1; g <= GENERATIONS; g++) {
+				Life.gameRound(expected, r, c, ranges[0], ranges[1], ranges[2], ranges[3]);
+				engine.step();
+				String where = name + " on a " + r + " by " + c + " board with rule " + ranges[0] + " " + ranges[1]
+						+ " " + ranges[2] + " " + ranges[3] + ", generation " + g;
+				boolean[][] actual = engine.toMatrix();
+				for (int i = 0; i < r; i++) {
+					assertArrayEquals(where + ", row " + i + ".", expected[i], actual[i]);
+				}
+				assertEquals(where + ": wrong population.", Life.population(expected, r, c), engine.getPopulation());
+			}
+		}
+	}
+
+	/**
+	 * Checks the single-threaded BufferedLife engine.
+	 */
+	@Test
+	public void test01Buffered() {
+		checkEngine("BufferedLife", (board, r, c, rule) -> new BufferedLife(board, r, c, rule), 1, 40);
+	}
+
+	/**
+	 * Checks BufferedLife stepping in parallel bands.
+	 */
+	@Test
+	public void test02BufferedParallel() {
+		checkEngine("BufferedLife x4", (board, r, c, rule) -> new BufferedLife(board, r, c, rule, 4), 1, 60);
+	}
+
+	/**
+	 * Checks the bit-packed engine, on boards wider than one 64-bit word.
+	 */
+	@Test
+	public void test03BitPacked() {
+		checkEngine("BitPackedLife", (board, r, c, rule) -> new BitPackedLife(board, r, c, rule), 1, 150);
+	}
+
+	/**
+	 * Checks the tiled engine with tiles small enough that most boards have many.
+	 */
+	@Test
+	public void test04Tiled() {
+		checkEngine("TiledLife", (board, r, c, rule) -> new TiledLife(board, r, c, rule, 8), 1, 60);
+	}
+
+	/**
+	 * Checks the vector engine, or the scalar engine that replaces it when the
+	 * Vector API is not available.
+	 */
+	@Test
+	public void test05Vectorized() {
+		checkEngine("VectorLife", (board, r, c, rule) -> LifeEngines.vectorized(board, r, c, rule), 1, 150);
+	}
+
+	/**
+	 * Checks Hashlife, with a node limit small enough to force collections.
+	 */
+	@Test
+	public void test06HashLife() {
+		checkEngine("HashLife", (board, r, c, rule) -> new HashLife(board, r, c, rule, 2000), 1, 70);
+	}
+}
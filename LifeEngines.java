@@ -0,0 +1,38 @@
+/**
+ * Chooses between Life engines based on what the running JVM supports.
+ */
+public class LifeEngines {
+
+	/** The name of the module VectorLife needs. */
+	private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+	/**
+	 * Checks whether the Vector API can be used.
+	 *
+	 * @return true if the incubator module was added to this JVM
+	 */
+	public static boolean hasVectorSupport() {
+		return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+	}
+
+	/**
+	 * Creates a VectorLife engine if the Vector API is available and the board
+	 * fits in one byte array, or a scalar BufferedLife engine if not.
+	 *
+	 * @param gameBoard array of the game board, as made by Life.getMatrix
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param rule      the birth and survival ranges
+	 * @return the fastest engine this JVM can run
+	 */
+	public static LifeEngine vectorized(boolean[][] gameBoard, int r, int c, LifeRule rule) {
+		if (hasVectorSupport() && (long) r * c <= VectorLife.MAX_CELLS) {
+			try {
+				return new VectorLife(gameBoard, r, c, rule);
+			} catch (LinkageError e) {
+				// The module is there but cannot be linked; use the scalar engine
+			}
+		}
+		return new BufferedLife(gameBoard, r, c, rule);
+	}
+}
@@ -0,0 +1,21 @@
+/**
+ * Receives one metrics record for every generation of a game of Life.
+ *
+ * Records are passed as plain numbers so that reporting a generation does not
+ * allocate anything.
+ */
+public interface LifeMetricsSink {
+
+	/**
+	 * Records the metrics of one generation.
+	 *
+	 * @param generation     the number of the generation just computed
+	 * @param population     the number of occupied cells after the step
+	 * @param births         the number of cells that became occupied
+	 * @param deaths         the number of cells that became empty
+	 * @param stepNanos      the wall-clock time the step took, in nanoseconds
+	 * @param cellsEvaluated the number of cells whose next state was computed
+	 */
+	public abstract void record(long generation, long population, long births, long deaths, long stepNanos,
+			long cellsEvaluated);
+}
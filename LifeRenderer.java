@@ -0,0 +1,248 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Draws Life boards in the same text format as Life.printBoard, but much
+ * faster.
+ *
+ * Each frame is built in one reusable byte buffer and written to a channel
+ * with a single call, instead of two print calls per cell. The renderer can
+ * skip generations, crop the board to a viewport, or draw nothing at all
+ * (headless), so large simulations are not slowed down by their output.
+ */
+public class LifeRenderer {
+
+	/** The bytes drawn for an empty cell. */
+	private static final byte[] DEAD = { '-', ' ' };
+	/** The bytes drawn for an occupied cell. */
+	private static final byte[] ALIVE = { '#', ' ' };
+	/** The bytes that end a line. */
+	private static final byte[] NEWLINE = System.lineSeparator().getBytes();
+	/** The largest frame, in bytes, that a buffer can hold on common JVMs. */
+	private static final long MAX_FRAME = Integer.MAX_VALUE - 8;
+
+	/** Where frames are written. */
+	private WritableByteChannel channel;
+	/** The frame being built, reused from one frame to the next. */
+	private ByteBuffer frame;
+	/** Only generations that are a multiple of this are drawn. */
+	private int interval;
+	/** Whether drawing is turned off completely. */
+	private boolean headless;
+
+	/** The first row of the viewport. */
+	private int top;
+	/** The first column of the viewport. */
+	private int left;
+	/** The number of rows in the viewport, or -1 to show every row. */
+	private int height;
+	/** The number of columns in the viewport, or -1 to show every column. */
+	private int width;
+
+	/** The number of frames written so far. */
+	private long framesWritten;
+
+	/**
+	 * Constructs a renderer that draws every generation of the whole board.
+	 *
+	 * @param channel where frames are written
+	 */
+	public LifeRenderer(WritableByteChannel channel) {
+		this.channel = channel;
+		interval = 1;
+		height = -1;
+		width = -1;
+		frame = ByteBuffer.allocate(0);
+	}
+
+	/**
+	 * Sets how often generations are drawn.
+	 *
+	 * @param n draw every nth generation, which must be positive
+	 */
+	public void setInterval(int n) {
+		if (n < 1) {
+			throw new IllegalArgumentException("The interval must be positive.");
+		}
+		interval = n;
+	}
+
+	/**
+	 * Turns drawing off or back on.
+	 *
+	 * @param headless true to draw nothing at all
+	 */
+	public void setHeadless(boolean headless) {
+		this.headless = headless;
+	}
+
+	/**
+	 * Crops frames to a rectangle of the board. Parts of the rectangle that are
+	 * off the board are not drawn.
+	 *
+	 * @param top    the first row to draw
+	 * @param left   the first column to draw
+	 * @param height the number of rows to draw
+	 * @param width  the number of columns to draw
+	 */
+	public void setViewport(int top, int left, int height, int width) {
+		if (top < 0 || left < 0 || height < 0 || width < 0) {
+			throw new IllegalArgumentException("The viewport cannot have negative coordinates.");
+		}
+		this.top = top;
+		this.left = left;
+		this.height = height;
+		this.width = width;
+	}
+
+	/**
+	 * Goes back to drawing the whole board.
+	 */
+	public void clearViewport() {
+		top = 0;
+		left = 0;
+		height = -1;
+		width = -1;
+	}
+
+	/**
+	 * Accessor for the number of frames drawn.
+	 *
+	 * @return the number of frames written so far
+	 */
+	public long getFramesWritten() {
+		return framesWritten;
+	}
+
+	/**
+	 * Draws a generation of a board, unless it is skipped.
+	 *
+	 * @param gameBoard  array of the game board
+	 * @param r          number of rows
+	 * @param c          number of columns
+	 * @param generation the number of the generation being drawn
+	 * @return true if a frame was written
+	 * @throws IOException if the channel cannot be written
+	 * @throws IllegalArgumentException if the viewport is too large to draw as
+	 *                                  one frame
+	 */
+	public boolean render(boolean[][] gameBoard, int r, int c, long generation) throws IOException {
+		if (!shouldRender(generation)) {
+			return false;
+		}
+		int lastRow = lastRow(r);
+		int lastColumn = lastColumn(c);
+		prepare(lastRow - top, lastColumn - left);
+		for (int i = top; i < lastRow; i++) {
+			boolean[] row = gameBoard[i];
+			for (int j = left; j < lastColumn; j++) {
+				frame.put(row[j] ? ALIVE : DEAD);
+			}
+			frame.put(NEWLINE);
+		}
+		frame.put(NEWLINE);
+		write();
+		return true;
+	}
+
+	/**
+	 * Draws the current generation of an engine, unless it is skipped.
+	 *
+	 * @param engine the engine holding the board
+	 * @return true if a frame was written
+	 * @throws IOException if the channel cannot be written
+	 * @throws IllegalArgumentException if the viewport is too large to draw as
+	 *                                  one frame
+	 */
+	public boolean render(LifeEngine engine) throws IOException {
+		if (!shouldRender(engine.getGeneration())) {
+			return false;
+		}
+		int lastRow = lastRow(engine.getRows());
+		int lastColumn = lastColumn(engine.getColumns());
+		prepare(lastRow - top, lastColumn - left);
+		for (int i = top; i < lastRow; i++) {
+			for (int j = left; j < lastColumn; j++) {
+				frame.put(engine.isAlive(i, j) ? ALIVE : DEAD);
+			}
+			frame.put(NEWLINE);
+		}
+		frame.put(NEWLINE);
+		write();
+		return true;
+	}
+
+	/**
+	 * Waits until every frame handed to the renderer has been written. Frames
+	 * are written before render returns, so there is nothing to wait for here.
+	 *
+	 * @throws IOException if a frame could not be written
+	 */
+	public void finish() throws IOException {
+	}
+
+	/**
+	 * Decides whether a generation should be drawn.
+	 *
+	 * @param generation the number of the generation
+	 * @return true if it should be drawn
+	 */
+	protected boolean shouldRender(long generation) {
+		return !headless && generation % interval == 0;
+	}
+
+	/**
+	 * Finds where the viewport ends vertically.
+	 *
+	 * @param r number of rows on the board
+	 * @return one past the last row to draw
+	 */
+	private int lastRow(int r) {
+		int last = height < 0 ? r : Math.min(r, top + height);
+		return Math.max(top, last);
+	}
+
+	/**
+	 * Finds where the viewport ends horizontally.
+	 *
+	 * @param c number of columns on the board
+	 * @return one past the last column to draw
+	 */
+	private int lastColumn(int c) {
+		int last = width < 0 ? c : Math.min(c, left + width);
+		return Math.max(left, last);
+	}
+
+	/**
+	 * Empties the frame buffer, growing it if it cannot hold a frame.
+	 *
+	 * @param rows    the number of rows in the frame
+	 * @param columns the number of columns in the frame
+	 * @throws IllegalArgumentException if the frame is too large for one buffer
+	 */
+	private void prepare(int rows, int columns) {
+		long needed = rows * ((long) columns * DEAD.length + NEWLINE.length) + NEWLINE.length;
+		if (needed > MAX_FRAME) {
+			throw new IllegalArgumentException("A frame of " + rows + " by " + columns
+					+ " cells is too large to draw; set a smaller viewport.");
+		}
+		if (frame.capacity() < needed) {
+			frame = ByteBuffer.allocate((int) needed);
+		}
+		frame.clear();
+	}
+
+	/**
+	 * Writes the finished frame to the channel.
+	 *
+	 * @throws IOException if the channel cannot be written
+	 */
+	private void write() throws IOException {
+		frame.flip();
+		while (frame.hasRemaining()) {
+			channel.write(frame);
+		}
+		framesWritten++;
+	}
+}
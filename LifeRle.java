@@ -0,0 +1,605 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads and writes Life patterns in the run-length encoded (RLE) format used
+ * by most Life software:
+ *
+ * #C optional comment lines
+ * x = 3, y = 3, rule = B3/S23
+ * bo$2bo$3o!
+ *
+ * b is an empty cell, o an occupied one, $ the end of a row and ! the end of
+ * the pattern; a number in front of any of them repeats it. Rules are written
+ * in B/S notation, which counts neighbors without the cell itself, so the
+ * survival counts are one less than LifeRule's. Only rules whose birth and
+ * survival counts are each one unbroken range can be read.
+ *
+ * Both directions stream through a fixed-size buffer on an NIO channel, one
+ * byte at a time, so neither the text of a row nor the whole file is ever held
+ * in memory. The border rows and columns of a board, which never change, are
+ * left out of exported patterns and put back on import.
+ */
+public class LifeRle implements AutoCloseable {
+
+	/** Size of the read and write buffers. */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/** The longest line written, as the format recommends. */
+	private static final int LINE_LENGTH = 70;
+	/** The rule used when a pattern does not name one. */
+	private static final LifeRule CONWAY = new LifeRule(3, 3, 3, 4);
+
+	/**
+	 * Receives the occupied cells of a pattern as they are read.
+	 */
+	public interface Target {
+
+		/**
+		 * Marks a run of occupied cells in one row.
+		 *
+		 * @param row    the row of the pattern
+		 * @param column the first column of the run
+		 * @param length the number of cells in the run
+		 */
+		public abstract void setAlive(int row, int column, int length);
+	}
+
+	/**
+	 * Gives the writer access to a board's cells, whatever holds them.
+	 */
+	private interface Cells {
+
+		/**
+		 * Checks one cell.
+		 *
+		 * @param row    the row of the board
+		 * @param column the column of the board
+		 * @return true if the cell is occupied
+		 */
+		public abstract boolean isAlive(int row, int column);
+	}
+
+	/** Where the pattern is read from. */
+	private ReadableByteChannel channel;
+	/** Bytes read from the channel but not yet parsed. */
+	private ByteBuffer buffer;
+
+	/** The number of columns in the pattern. */
+	private int width;
+	/** The number of rows in the pattern. */
+	private int height;
+	/** The pattern's rule. */
+	private LifeRule rule;
+
+	/**
+	 * Starts reading a pattern and reads its header. The cells are read later
+	 * by readCells, readBoard or readBitPacked.
+	 *
+	 * @param channel where the pattern is read from
+	 * @throws IOException if the channel cannot be read or has no valid header
+	 */
+	public LifeRle(ReadableByteChannel channel) throws IOException {
+		this.channel = channel;
+		buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		buffer.flip();
+		readHeader();
+	}
+
+	/**
+	 * Opens a pattern file.
+	 *
+	 * @param file the RLE file
+	 * @return a reader positioned after the header
+	 * @throws IOException if the file cannot be read or has no valid header
+	 */
+	public static LifeRle open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new LifeRle(channel);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the next byte.
+	 *
+	 * @return the byte, or -1 at the end of the channel
+	 * @throws IOException if the channel cannot be read
+	 */
+	private int next() throws IOException {
+		if (!buffer.hasRemaining()) {
+			buffer.clear();
+			int n;
+			do {
+				n = channel.read(buffer);
+			} while (n == 0);
+			buffer.flip();
+			if (n < 0) {
+				return -1;
+			}
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	/**
+	 * Reads one line of text. Only used for the header and comments, which are
+	 * short.
+	 *
+	 * @return the line without its ending, or null at the end of the channel
+	 * @throws IOException if the channel cannot be read
+	 */
+	private String readLine() throws IOException {
+		StringBuilder line = new StringBuilder();
+		int b = next();
+		if (b < 0) {
+			return null;
+		}
+		while (b >= 0 && b != '\n') {
+			if (b != '\r') {
+				line.append((char) b);
+			}
+			b = next();
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Skips comment lines and parses the "x = m, y = n, rule = ..." line.
+	 *
+	 * @throws IOException if there is no valid header
+	 */
+	private void readHeader() throws IOException {
+		String line = readLine();
+		while (line != null && (line.isBlank() || line.startsWith("#"))) {
+			line = readLine();
+		}
+		if (line == null) {
+			throw new IOException("RLE pattern has no header.");
+		}
+
+		width = -1;
+		height = -1;
+		rule = CONWAY;
+		for (String field : line.split(",")) {
+			int equals = field.indexOf('=');
+			if (equals < 0) {
+				throw new IOException("Bad RLE header: " + line);
+			}
+			String name = field.substring(0, equals).trim();
+			String value = field.substring(equals + 1).trim();
+			try {
+				if (name.equals("x")) {
+					width = Integer.parseInt(value);
+				} else if (name.equals("y")) {
+					height = Integer.parseInt(value);
+				} else if (name.equals("rule")) {
+					rule = parseRule(value);
+				}
+			} catch (NumberFormatException e) {
+				throw new IOException("Bad RLE header: " + line, e);
+			}
+		}
+		if (width < 0 || height < 0) {
+			throw new IOException("RLE header needs x and y: " + line);
+		}
+	}
+
+	/**
+	 * Converts a rule in B/S notation (like B3/S23) or the older S/B notation
+	 * (like 23/3) into a LifeRule.
+	 *
+	 * @param text the rule
+	 * @return the same rule, with neighbor counts that include the cell itself
+	 * @throws IOException if the rule is not understood or its counts are not
+	 *                     unbroken ranges
+	 */
+	public static LifeRule parseRule(String text) throws IOException {
+		String[] parts = text.trim().toUpperCase().split("/");
+		if (parts.length != 2) {
+			throw new IOException("Bad rule: " + text);
+		}
+		String births;
+		String survivals;
+		if (parts[0].startsWith("B") && parts[1].startsWith("S")) {
+			births = parts[0].substring(1);
+			survivals = parts[1].substring(1);
+		} else if (parts[0].startsWith("S") && parts[1].startsWith("B")) {
+			births = parts[1].substring(1);
+			survivals = parts[0].substring(1);
+		} else {
+			births = parts[1];
+			survivals = parts[0];
+		}
+
+		int birthMask = countMask(births, text);
+		int surviveMask = countMask(survivals, text) << 1;
+		if (!isRange(birthMask) || !isRange(surviveMask)) {
+			throw new IOException("Rule counts must be unbroken ranges: " + text);
+		}
+		return new LifeRule(lowest(birthMask), highest(birthMask), lowest(surviveMask), highest(surviveMask));
+	}
+
+	/**
+	 * Turns a list of neighbor counts into a bit mask.
+	 *
+	 * @param digits the counts, one digit each
+	 * @param text   the whole rule, for error messages
+	 * @return a mask with bit k set for each count k
+	 * @throws IOException if a character is not a count from 0 to 8
+	 */
+	private static int countMask(String digits, String text) throws IOException {
+		int mask = 0;
+		for (int i = 0; i < digits.length(); i++) {
+			char digit = digits.charAt(i);
+			if (digit < '0' || digit > '8') {
+				throw new IOException("Bad rule: " + text);
+			}
+			mask |= 1 << (digit - '0');
+		}
+		return mask;
+	}
+
+	/**
+	 * Checks that the set bits of a mask are next to each other.
+	 *
+	 * @param mask the mask
+	 * @return true if the mask is empty or one run of bits
+	 */
+	private static boolean isRange(int mask) {
+		int shifted = mask >>> Integer.numberOfTrailingZeros(mask | (1 << 31));
+		return (shifted & (shifted + 1)) == 0;
+	}
+
+	/**
+	 * Finds the smallest count in a mask.
+	 *
+	 * @param mask the mask
+	 * @return the lowest set bit, or 1 for an empty mask (so the range is empty)
+	 */
+	private static int lowest(int mask) {
+		return mask == 0 ? 1 : Integer.numberOfTrailingZeros(mask);
+	}
+
+	/**
+	 * Finds the largest count in a mask.
+	 *
+	 * @param mask the mask
+	 * @return the highest set bit, or 0 for an empty mask (so the range is empty)
+	 */
+	private static int highest(int mask) {
+		return mask == 0 ? 0 : 31 - Integer.numberOfLeadingZeros(mask);
+	}
+
+	/**
+	 * Writes a LifeRule in B/S notation.
+	 *
+	 * @param rule the rule
+	 * @return the rule as text, like B3/S23
+	 */
+	public static String formatRule(LifeRule rule) {
+		StringBuilder text = new StringBuilder("B");
+		for (int k = Math.max(0, rule.getMinBirth()); k <= Math.min(8, rule.getMaxBirth()); k++) {
+			text.append(k);
+		}
+		text.append("/S");
+		for (int k = Math.max(1, rule.getMinSurvive()); k <= Math.min(9, rule.getMaxSurvive()); k++) {
+			text.append(k - 1);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Reads the cells of the pattern, passing each run of occupied cells to a
+	 * target as soon as it is decoded.
+	 *
+	 * @param target where the runs go
+	 * @throws IOException if the channel cannot be read or the pattern is bad
+	 */
+	public void readCells(Target target) throws IOException {
+		int row = 0;
+		int column = 0;
+		long count = 0;
+		int b = next();
+		while (b >= 0 && b != '!') {
+			if (b >= '0' && b <= '9') {
+				count = count * 10 + (b - '0');
+				if (count > Integer.MAX_VALUE) {
+					throw new IOException("Run too long in RLE pattern.");
+				}
+			} else if (b == '#') {
+				// a comment in the middle of the cells runs to the end of the line
+				while (b >= 0 && b != '\n') {
+					b = next();
+				}
+				continue;
+			} else if (b > ' ') {
+				int n = count == 0 ? 1 : (int) count;
+				count = 0;
+				if (b == '$') {
+					row += n;
+					column = 0;
+				} else {
+					if (row >= height || column + (long) n > width) {
+						throw new IOException("RLE pattern is larger than its header says.");
+					}
+					if (b != 'b' && b != '.') {
+						target.setAlive(row, column, n);
+					}
+					column += n;
+				}
+			}
+			b = next();
+		}
+	}
+
+	/**
+	 * Reads the cells into a new board with an empty border around the pattern,
+	 * as Life.getMatrix would make it.
+	 *
+	 * @return an array of getHeight() + 2 rows and getWidth() + 2 columns
+	 * @throws IOException if the channel cannot be read or the pattern is bad
+	 */
+	public boolean[][] readBoard() throws IOException {
+		boolean[][] gameBoard = new boolean[height + 2][width + 2];
+		readCells((row, column, length) -> Arrays.fill(gameBoard[row + 1], column + 1, column + 1 + length, true));
+		return gameBoard;
+	}
+
+	/**
+	 * Reads the cells straight into a bit-packed engine with an empty border
+	 * around the pattern, without building a boolean array first.
+	 *
+	 * @return an engine of getHeight() + 2 rows and getWidth() + 2 columns
+	 *         running the pattern's rule
+	 * @throws IOException if the channel cannot be read or the pattern is bad
+	 */
+	public BitPackedLife readBitPacked() throws IOException {
+		BitPackedLife life = new BitPackedLife(height + 2, width + 2, rule);
+		readCells((row, column, length) -> {
+			for (int j = column; j < column + length; j++) {
+				life.set(row + 1, j + 1, true);
+			}
+		});
+		return life;
+	}
+
+	/**
+	 * Accessor for the width.
+	 *
+	 * @return the number of columns in the pattern
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Accessor for the height.
+	 *
+	 * @return the number of rows in the pattern
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Accessor for the rule.
+	 *
+	 * @return the rule from the header, or standard Life if it has none
+	 */
+	public LifeRule getRule() {
+		return rule;
+	}
+
+	/**
+	 * Closes the channel.
+	 *
+	 * @throws IOException if the channel cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Writes the interior of a board as an RLE pattern.
+	 *
+	 * @param channel   where the pattern is written
+	 * @param gameBoard array of the game board
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param rule      the birth and survival ranges
+	 * @throws IOException if the channel cannot be written
+	 */
+	public static void write(WritableByteChannel channel, boolean[][] gameBoard, int r, int c, LifeRule rule)
+			throws IOException {
+		write(channel, (row, column) -> gameBoard[row][column], r, c, rule);
+	}
+
+	/**
+	 * Writes the interior of an engine's current generation as an RLE pattern.
+	 *
+	 * @param channel where the pattern is written
+	 * @param engine  the engine holding the board
+	 * @param rule    the birth and survival ranges
+	 * @throws IOException if the channel cannot be written
+	 */
+	public static void write(WritableByteChannel channel, LifeEngine engine, LifeRule rule) throws IOException {
+		write(channel, engine::isAlive, engine.getRows(), engine.getColumns(), rule);
+	}
+
+	/**
+	 * Writes the interior of a board to an RLE file, replacing any existing one.
+	 *
+	 * @param file      the RLE file
+	 * @param gameBoard array of the game board
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param rule      the birth and survival ranges
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(Path file, boolean[][] gameBoard, int r, int c, LifeRule rule) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			write(channel, gameBoard, r, c, rule);
+		}
+	}
+
+	/**
+	 * Writes the header and the runs of every interior row.
+	 *
+	 * @param channel where the pattern is written
+	 * @param cells   the board
+	 * @param r       number of rows
+	 * @param c       number of columns
+	 * @param rule    the birth and survival ranges
+	 * @throws IOException if the channel cannot be written
+	 */
+	private static void write(WritableByteChannel channel, Cells cells, int r, int c, LifeRule rule)
+			throws IOException {
+		int width = Math.max(0, c - 2);
+		int height = Math.max(0, r - 2);
+		Output out = new Output(channel);
+		out.text("x = " + width + ", y = " + height + ", rule = " + formatRule(rule));
+		out.newLine();
+
+		// Empty rows, and empty cells at the end of a row, are not written
+		int pendingRows = 0;
+		for (int i = 1; i <= height; i++) {
+			int j = 1;
+			int deadRun = 0;
+			while (j <= width) {
+				boolean alive = cells.isAlive(i, j);
+				int start = j;
+				while (j <= width && cells.isAlive(i, j) == alive) {
+					j++;
+				}
+				if (!alive) {
+					deadRun = j - start;
+					continue;
+				}
+				if (pendingRows > 0) {
+					out.run(pendingRows, '$');
+					pendingRows = 0;
+				}
+				if (deadRun > 0) {
+					out.run(deadRun, 'b');
+					deadRun = 0;
+				}
+				out.run(j - start, 'o');
+			}
+			pendingRows++;
+		}
+		out.run(1, '!');
+		out.newLine();
+		out.flush();
+	}
+
+	/**
+	 * A buffered writer of RLE text that keeps lines short.
+	 */
+	private static class Output {
+
+		/** The end of a line. */
+		private static final byte NEWLINE = '\n';
+
+		/** Where the text goes. */
+		private WritableByteChannel channel;
+		/** Text not yet written to the channel. */
+		private ByteBuffer buffer;
+		/** The length of the current line. */
+		private int lineLength;
+		/** Room for the digits of a run length. */
+		private byte[] digits;
+
+		/**
+		 * Constructs a writer.
+		 *
+		 * @param channel where the text goes
+		 */
+		Output(WritableByteChannel channel) {
+			this.channel = channel;
+			buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			digits = new byte[10];
+		}
+
+		/**
+		 * Writes a short piece of text as is.
+		 *
+		 * @param text the text
+		 * @throws IOException if the channel cannot be written
+		 */
+		void text(String text) throws IOException {
+			for (int i = 0; i < text.length(); i++) {
+				put((byte) text.charAt(i));
+			}
+		}
+
+		/**
+		 * Writes one run, starting a new line first if it would not fit.
+		 *
+		 * @param count  how many times the symbol repeats
+		 * @param symbol b, o, $ or !
+		 * @throws IOException if the channel cannot be written
+		 */
+		void run(int count, char symbol) throws IOException {
+			int length = 0;
+			if (count > 1) {
+				for (int n = count; n > 0; n /= 10) {
+					digits[length++] = (byte) ('0' + n % 10);
+				}
+			}
+			if (lineLength + length + 1 > LINE_LENGTH) {
+				newLine();
+			}
+			while (length > 0) {
+				put(digits[--length]);
+			}
+			put((byte) symbol);
+		}
+
+		/**
+		 * Ends the current line.
+		 *
+		 * @throws IOException if the channel cannot be written
+		 */
+		void newLine() throws IOException {
+			put(NEWLINE);
+			lineLength = 0;
+		}
+
+		/**
+		 * Adds one byte, writing the buffer out when it is full.
+		 *
+		 * @param b the byte
+		 * @throws IOException if the channel cannot be written
+		 */
+		private void put(byte b) throws IOException {
+			if (!buffer.hasRemaining()) {
+				flush();
+			}
+			buffer.put(b);
+			lineLength++;
+		}
+
+		/**
+		 * Writes everything buffered to the channel.
+		 *
+		 * @throws IOException if the channel cannot be written
+		 */
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+}
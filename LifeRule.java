@@ -0,0 +1,188 @@
+/**
+ * The birth and survival ranges that decide how a game of Life evolves.
+ * 
+ * Neighbor counts include the cell itself, exactly the way Life.gameRound
+ * counts them, so a count is always between 0 and 9.
+ *
+ * A rule can also be compiled into a lookup table indexed by the 3x3
+ * neighborhood of a cell, so engines can decide each cell with one array read.
+ * Bits 6-8 of an index hold the row above, bits 3-5 the cell's own row and bits
+ * 0-2 the row below; within each row the highest bit is the left column and the
+ * lowest is the right column. Bit 4 is the cell itself.
+ */
+public class LifeRule {
+
+	/** The largest possible neighbor count (eight neighbors plus the cell). */
+	public static final int MAX_COUNT = 9;
+	/** The number of possible 3x3 neighborhoods. */
+	public static final int TABLE_SIZE = 512;
+	/** The bit of a neighborhood index that holds the cell itself. */
+	public static final int SELF = 1 << 4;
+	/** The bits of a neighborhood index that survive a shift one column right. */
+	public static final int SHIFT_MASK = 0b110110110;
+
+	/** Minimum number of neighbors necessary for a birth. */
+	private int minBirth;
+	/** Maximum number of neighbors allowable for a birth. */
+	private int maxBirth;
+	/** Minimum number of neighbors for survival. */
+	private int minSurvive;
+	/** Maximum number of neighbors for survival. */
+	private int maxSurvive;
+	/** The next state of every neighborhood, built the first time it is needed. */
+	private boolean[] table;
+
+	/**
+	 * Constructs a new rule.
+	 * 
+	 * @param minB minimum number of neighbors necessary for a birth
+	 * @param maxB maximum number of neighbors allowable for a birth
+	 * @param minS minimum number of neighbors for survival
+	 * @param maxS maximum number of neighbors for survival
+	 */
+	public LifeRule(int minB, int maxB, int minS, int maxS) {
+		minBirth = minB;
+		maxBirth = maxB;
+		minSurvive = minS;
+		maxSurvive = maxS;
+	}
+
+	/**
+	 * Decides what a cell becomes in the next generation.
+	 * 
+	 * @param alive         whether the cell is currently occupied
+	 * @param neighborCount the number of occupied cells in its 3x3 neighborhood,
+	 *                      including itself
+	 * @return true if the cell is occupied in the next generation
+	 */
+	public boolean nextState(boolean alive, int neighborCount) {
+		if (alive) {
+			return neighborCount >= minSurvive && neighborCount <= maxSurvive;
+		} else {
+			return neighborCount >= minBirth && neighborCount <= maxBirth;
+		}
+	}
+
+	/**
+	 * Gets the rule as a lookup table from neighborhoods to next states.
+	 * 
+	 * @return an array of TABLE_SIZE entries, where entry p is the next state of
+	 *         a cell whose 3x3 neighborhood has the bits of p (shared, so it must
+	 *         not be modified)
+	 */
+	public boolean[] getTable() {
+		if (table == null) {
+			boolean[] built = new boolean[TABLE_SIZE];
+			for (int pattern = 0; pattern < TABLE_SIZE; pattern++) {
+				built[pattern] = nextState((pattern & SELF) != 0, Integer.bitCount(pattern));
+			}
+			table = built;
+		}
+		return table;
+	}
+
+	/**
+	 * Starts sliding a neighborhood index along a row. The result holds columns 0
+	 * and 1; shifting in column 2 with columnBits completes the index of the cell
+	 * in column 1.
+	 * 
+	 * @param above the row above
+	 * @param same  the row holding the cells
+	 * @param below the row below
+	 * @return the partial index
+	 */
+	public static int startPattern(boolean[] above, boolean[] same, boolean[] below) {
+		return (columnBits(above, same, below, 0) << 1) | columnBits(above, same, below, 1);
+	}
+
+	/**
+	 * Gets the three cells of one column as they appear in the lowest column of a
+	 * neighborhood index.
+	 * 
+	 * @param above the row above
+	 * @param same  the middle row
+	 * @param below the row below
+	 * @param j     the column
+	 * @return the bits to add to an index after shifting it one column right
+	 */
+	public static int columnBits(boolean[] above, boolean[] same, boolean[] below, int j) {
+		return (above[j] ? 1 << 6 : 0) | (same[j] ? 1 << 3 : 0) | (below[j] ? 1 : 0);
+	}
+
+	/**
+	 * Gets the neighbor counts that cause a birth as a bit set.
+	 * 
+	 * @return a mask where bit k is set if an empty cell with k neighbors is born
+	 */
+	public int getBirthMask() {
+		return rangeMask(minBirth, maxBirth);
+	}
+
+	/**
+	 * Gets the neighbor counts that let an organism survive as a bit set.
+	 * 
+	 * @return a mask where bit k is set if an occupied cell with k neighbors
+	 *         survives
+	 */
+	public int getSurviveMask() {
+		return rangeMask(minSurvive, maxSurvive);
+	}
+
+	/**
+	 * Builds a bit set of every possible count within a range.
+	 * 
+	 * @param min the smallest count in the range
+	 * @param max the largest count in the range
+	 * @return a mask where bit k is set if min <= k <= max
+	 */
+	private static int rangeMask(int min, int max) {
+		int mask = 0;
+		for (int k = 0; k <= MAX_COUNT; k++) {
+			if (k >= min && k <= max) {
+				mask |= 1 << k;
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Accessor for the minimum birth count.
+	 * 
+	 * @return the minimum number of neighbors necessary for a birth
+	 */
+	public int getMinBirth() {
+		return minBirth;
+	}
+
+	/**
+	 * Accessor for the maximum birth count.
+	 * 
+	 * @return the maximum number of neighbors allowable for a birth
+	 */
+	public int getMaxBirth() {
+		return maxBirth;
+	}
+
+	/**
+	 * Accessor for the minimum survival count.
+	 * 
+	 * @return the minimum number of neighbors for survival
+	 */
+	public int getMinSurvive() {
+		return minSurvive;
+	}
+
+	/**
+	 * Accessor for the maximum survival count.
+	 * 
+	 * @return the maximum number of neighbors for survival
+	 */
+	public int getMaxSurvive() {
+		return maxSurvive;
+	}
+
+	@Override
+	public String toString() {
+		return minBirth + " " + maxBirth + " " + minSurvive + " " + maxSurvive;
+	}
+}
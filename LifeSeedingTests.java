@@ -0,0 +1,111 @@
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.FixMethodOrder;
+
+/*
+ * You must include the Junit4 library to use this test unit.
+ *
+ * To add it, select the project and then choose Properties... from the File menu.
+ * Click on "Java Build Path" in the panel at the left.
+ * Select Libraries from the list at the top.
+ * Select Add Library... from the right side of the panel.
+ * Select JUnit and click on Next.
+ * Change the version to JUnit 4 and click on Finish.
+ * Click on OK in the properties panel.
+ *
+ * You can then run these tests using "Run As JUnit Test" instead of "Runs As Java Application".
+ */
+
+/**
+ * JUnit tests for Life.getMatrixParallel.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LifeSeedingTests {
+
+	/** Rows in each seeded block, as in Life. */
+	private static final int BLOCK_ROWS = 64;
+	/** Enough columns that each row holds exactly one 64-bit random number. */
+	private static final int COLUMNS = 66;
+	/** The seeds each test tries, including the ones that used to collide. */
+	private static final long[] SEEDS = { 0, 1, 42, -1, Long.MIN_VALUE };
+
+	/**
+	 * Reads back the random number a row was filled from.
+	 *
+	 * @param row a row of a board COLUMNS wide
+	 * @return its interior cells as the bits of a long, lowest column first
+	 */
+	private static long word(boolean[] row) {
+		long word = 0;
+		for (int j = COLUMNS - 2; j >= 1; j--) {
+			word = (word << 1) | (row[j] ? 1 : 0);
+		}
+		return word;
+	}
+
+	/**
+	 * Checks that the board is the same no matter how many threads fill it.
+	 */
+	@Test
+	public void test01SameForAnyThreadCount() {
+		for (long seed : SEEDS) {
+			boolean[][] single = Life.getMatrixParallel(10 * BLOCK_ROWS + 5, COLUMNS, seed, 1);
+			for (int threads = 2; threads <= 8; threads *= 2) {
+				boolean[][] parallel = Life.getMatrixParallel(10 * BLOCK_ROWS + 5, COLUMNS, seed, threads);
+				for (int i = 0; i < single.length; i++) {
+					assertArrayEquals("Board depended on the number of threads.", single[i], parallel[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that no block repeats any part of another block's random stream,
+	 * which would happen if the blocks' streams were shifted copies of each
+	 * other.
+	 */
+	@Test
+	public void test02BlocksDoNotShareStreams() {
+		int blocks = 32;
+		for (long seed : SEEDS) {
+			boolean[][] board = Life.getMatrixParallel(blocks * BLOCK_ROWS, COLUMNS, seed, 4);
+			Map<Long, Integer> blockOf = new HashMap<Long, Integer>();
+			for (int i = 1; i < board.length - 1; i++) {
+				Integer earlier = blockOf.put(word(board[i]), i / BLOCK_ROWS);
+				assertTrue("Seed " + seed + ": blocks " + earlier + " and " + (i / BLOCK_ROWS)
+						+ " drew the same random number.", earlier == null);
+			}
+		}
+	}
+
+	/**
+	 * Checks that different seeds give different boards, and that the border
+	 * stays empty.
+	 */
+	@Test
+	public void test03SeedsDifferAndBorderIsEmpty() {
+		boolean[][] first = Life.getMatrixParallel(2 * BLOCK_ROWS, COLUMNS, 1, 2);
+		boolean[][] second = Life.getMatrixParallel(2 * BLOCK_ROWS, COLUMNS, 2, 2);
+		int same = 0;
+		for (int i = 1; i < first.length - 1; i++) {
+			if (word(first[i]) == word(second[i])) {
+				same++;
+			}
+		}
+		assertEquals("Different seeds gave matching rows.", 0, same);
+		for (int j = 0; j < COLUMNS; j++) {
+			assertTrue("Border was filled.", !first[0][j] && !first[first.length - 1][j]);
+		}
+		for (boolean[] row : first) {
+			assertTrue("Border was filled.", !row[0] && !row[COLUMNS - 1]);
+		}
+	}
+}
@@ -0,0 +1,381 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Random;
+
+/**
+ * One worker process of a ShardedLife game. It owns a horizontal band of the
+ * board's interior rows and steps them with a BufferedLife.
+ *
+ * The worker keeps one extra row above and below its band (the halo). Before
+ * every generation it sends its first row to the worker above and its last
+ * row to the worker below, and receives their edge rows into its halo. The
+ * coordinator tells it how many generations to run and receives its
+ * population, births and deaths after each one.
+ *
+ * Run by ShardedLife as: java LifeShardWorker coordinatorPort
+ */
+public class LifeShardWorker {
+
+	/** Command from the coordinator: run some generations. */
+	static final int STEP = 1;
+	/** Command from the coordinator: send back the band's rows. */
+	static final int GATHER = 2;
+	/** Command from the coordinator: shut down. */
+	static final int STOP = 3;
+
+	/** The multiplier of java.util.Random's generator. */
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	/** The addend of java.util.Random's generator. */
+	private static final long ADDEND = 0xBL;
+	/** java.util.Random keeps 48 bits of state. */
+	private static final long MASK = (1L << 48) - 1;
+	/** Size of the socket buffers. */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** The position of this worker, counting from the top of the board. */
+	private int index;
+	/** The number of rows in the band. */
+	private int bandRows;
+	/** The number of columns on the board. */
+	private int columns;
+	/** The band plus one halo row above and below it. */
+	private BufferedLife life;
+
+	/** Rows from the worker above, or null for the top band. */
+	private DataInputStream fromAbove;
+	/** Rows to the worker above, or null for the top band. */
+	private DataOutputStream toAbove;
+	/** Rows from the worker below, or null for the bottom band. */
+	private DataInputStream fromBelow;
+	/** Rows to the worker below, or null for the bottom band. */
+	private DataOutputStream toBelow;
+
+	/**
+	 * Constructs a worker's band, filled with the same cells Life.getMatrix
+	 * would put in those rows.
+	 *
+	 * @param index    the position of this worker
+	 * @param r        number of rows on the whole board
+	 * @param c        number of columns
+	 * @param s        random seed
+	 * @param rule     the birth and survival ranges
+	 * @param firstRow the first row of the band
+	 * @param lastRow  one past the last row of the band
+	 */
+	public LifeShardWorker(int index, int r, int c, long s, LifeRule rule, int firstRow, int lastRow) {
+		this.index = index;
+		bandRows = lastRow - firstRow;
+		columns = c;
+
+		// Skip the values getMatrix draws for the rows above the band
+		Random rand = randomAfter(s, (long) (firstRow - 1) * Math.max(0, c - 2));
+		boolean[][] band = new boolean[bandRows + 2][c];
+		for (int i = 1; i <= bandRows; i++) {
+			for (int j = 1; j < (c - 1); j++) {
+				band[i][j] = rand.nextBoolean();
+			}
+		}
+		life = new BufferedLife(band, bandRows + 2, c, rule);
+	}
+
+	/**
+	 * Makes a java.util.Random in the state it would be in after drawing a
+	 * number of values from a generator seeded with s. The generator is linear,
+	 * so any number of draws can be jumped over in logarithmic time.
+	 *
+	 * @param s     random seed
+	 * @param draws the number of values to skip
+	 * @return the generator, ready to draw the next value
+	 */
+	static Random randomAfter(long s, long draws) {
+		long multiplier = 1;
+		long addend = 0;
+		long stepMultiplier = MULTIPLIER;
+		long stepAddend = ADDEND;
+		for (long n = draws; n > 0; n >>>= 1) {
+			if ((n & 1) != 0) {
+				multiplier *= stepMultiplier;
+				addend = addend * stepMultiplier + stepAddend;
+			}
+			stepAddend *= stepMultiplier + 1;
+			stepMultiplier *= stepMultiplier;
+		}
+		long state = ((s ^ MULTIPLIER) & MASK) * multiplier + addend;
+
+		// setSeed scrambles its argument the same way, which undoes this one
+		Random rand = new Random();
+		rand.setSeed((state & MASK) ^ MULTIPLIER);
+		return rand;
+	}
+
+	/**
+	 * Connects to the coordinator and the neighbouring workers, then runs
+	 * commands until told to stop.
+	 *
+	 * @param args the coordinator's port on the loopback address
+	 * @throws IOException if a connection fails
+	 */
+	public static void main(String[] args) throws IOException {
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		try (Socket coordinator = new Socket(loopback, Integer.parseInt(args[0]));
+				ServerSocket listener = new ServerSocket(0, 1, loopback)) {
+			coordinator.setTcpNoDelay(true);
+			DataInputStream commands = input(coordinator);
+			DataOutputStream replies = output(coordinator);
+			replies.writeInt(listener.getLocalPort());
+			replies.flush();
+
+			int index = commands.readInt();
+			int r = commands.readInt();
+			int c = commands.readInt();
+			long s = commands.readLong();
+			LifeRule rule = new LifeRule(commands.readInt(), commands.readInt(), commands.readInt(),
+					commands.readInt());
+			int firstRow = commands.readInt();
+			int lastRow = commands.readInt();
+			int belowPort = commands.readInt();
+			LifeShardWorker worker = new LifeShardWorker(index, r, c, s, rule, firstRow, lastRow);
+
+			// Connect downwards first: the connection waits in the listener's
+			// backlog until the worker below accepts it, so nobody waits in a ring
+			Socket below = belowPort == 0 ? null : new Socket(loopback, belowPort);
+			Socket above = index == 0 ? null : listener.accept();
+			try {
+				worker.connect(above, below);
+				worker.serve(commands, replies);
+			} finally {
+				if (below != null) {
+					below.close();
+				}
+				if (above != null) {
+					above.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets up the halo connections.
+	 *
+	 * @param above the connection to the worker above, or null
+	 * @param below the connection to the worker below, or null
+	 * @throws IOException if the streams cannot be opened
+	 */
+	private void connect(Socket above, Socket below) throws IOException {
+		if (above != null) {
+			above.setTcpNoDelay(true);
+			fromAbove = input(above);
+			toAbove = output(above);
+		}
+		if (below != null) {
+			below.setTcpNoDelay(true);
+			fromBelow = input(below);
+			toBelow = output(below);
+		}
+	}
+
+	/**
+	 * Reports the starting population and runs the coordinator's commands.
+	 *
+	 * @param commands the stream of commands
+	 * @param replies  where results are sent
+	 * @throws IOException if a connection fails
+	 */
+	private void serve(DataInputStream commands, DataOutputStream replies) throws IOException {
+		replies.writeLong(population());
+		replies.flush();
+		while (true) {
+			int command = commands.readInt();
+			if (command == STEP) {
+				long generations = commands.readLong();
+				for (long g = 0; g < generations; g++) {
+					step(replies);
+				}
+				replies.flush();
+			} else if (command == GATHER) {
+				boolean[][] band = life.getBoard();
+				for (int i = 1; i <= bandRows; i++) {
+					writeRow(replies, band[i], columns);
+				}
+				replies.flush();
+			} else if (command == STOP) {
+				return;
+			} else {
+				throw new IOException("Unknown command " + command);
+			}
+		}
+	}
+
+	/**
+	 * Exchanges halos, computes one generation, and reports what changed.
+	 *
+	 * @param replies where the generation's metrics are sent
+	 * @throws IOException if a connection fails
+	 */
+	private void step(DataOutputStream replies) throws IOException {
+		boolean[][] before = life.getBoard();
+		exchange(before);
+
+		long start = System.nanoTime();
+		life.step();
+		long elapsed = System.nanoTime() - start;
+
+		// The step wrote into the other buffer, so before still holds the last
+		// generation of the band
+		boolean[][] after = life.getBoard();
+		long population = 0;
+		long births = 0;
+		long deaths = 0;
+		for (int i = 1; i <= bandRows; i++) {
+			for (int j = 0; j < columns; j++) {
+				if (after[i][j]) {
+					population++;
+					if (!before[i][j]) {
+						births++;
+					}
+				} else if (before[i][j]) {
+					deaths++;
+				}
+			}
+		}
+		replies.writeLong(population);
+		replies.writeLong(births);
+		replies.writeLong(deaths);
+		replies.writeLong(elapsed);
+	}
+
+	/**
+	 * Swaps edge rows with both neighbours.
+	 *
+	 * Even workers trade with the worker below first and odd workers with the
+	 * worker above first, so every pair of neighbours trades at the same time.
+	 * On each connection the upper worker writes first and the lower one reads
+	 * first, so neither waits for the other when the rows do not fit in the
+	 * socket buffers.
+	 *
+	 * @param board the band, whose halo rows are overwritten
+	 * @throws IOException if a connection fails
+	 */
+	private void exchange(boolean[][] board) throws IOException {
+		if (index % 2 == 0) {
+			exchangeBelow(board);
+			exchangeAbove(board);
+		} else {
+			exchangeAbove(board);
+			exchangeBelow(board);
+		}
+	}
+
+	/**
+	 * Sends the last row down and receives the halo below.
+	 *
+	 * @param board the band
+	 * @throws IOException if the connection fails
+	 */
+	private void exchangeBelow(boolean[][] board) throws IOException {
+		if (toBelow != null) {
+			writeRow(toBelow, board[bandRows], columns);
+			toBelow.flush();
+			readRow(fromBelow, board[bandRows + 1], columns);
+		}
+	}
+
+	/**
+	 * Receives the halo above and sends the first row up.
+	 *
+	 * @param board the band
+	 * @throws IOException if the connection fails
+	 */
+	private void exchangeAbove(boolean[][] board) throws IOException {
+		if (fromAbove != null) {
+			readRow(fromAbove, board[0], columns);
+			writeRow(toAbove, board[1], columns);
+			toAbove.flush();
+		}
+	}
+
+	/**
+	 * Counts the occupied cells in the band.
+	 *
+	 * @return the band's population
+	 */
+	private long population() {
+		boolean[][] band = life.getBoard();
+		long population = 0;
+		for (int i = 1; i <= bandRows; i++) {
+			for (int j = 0; j < columns; j++) {
+				if (band[i][j]) {
+					population++;
+				}
+			}
+		}
+		return population;
+	}
+
+	/**
+	 * Opens a buffered stream for reading from a socket.
+	 *
+	 * @param socket the socket
+	 * @return the stream
+	 * @throws IOException if the socket is closed
+	 */
+	static DataInputStream input(Socket socket) throws IOException {
+		return new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+	}
+
+	/**
+	 * Opens a buffered stream for writing to a socket.
+	 *
+	 * @param socket the socket
+	 * @return the stream
+	 * @throws IOException if the socket is closed
+	 */
+	static DataOutputStream output(Socket socket) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+	}
+
+	/**
+	 * Writes a row as packed words, one bit per cell.
+	 *
+	 * @param out the stream
+	 * @param row the row of the board
+	 * @param c   number of columns
+	 * @throws IOException if the stream cannot be written
+	 */
+	static void writeRow(DataOutputStream out, boolean[] row, int c) throws IOException {
+		for (int start = 0; start < c; start += Long.SIZE) {
+			long word = 0;
+			int end = Math.min(c, start + Long.SIZE);
+			for (int j = start; j < end; j++) {
+				if (row[j]) {
+					word |= 1L << (j - start);
+				}
+			}
+			out.writeLong(word);
+		}
+	}
+
+	/**
+	 * Reads a row written by writeRow.
+	 *
+	 * @param in  the stream
+	 * @param row the row of the board to fill
+	 * @param c   number of columns
+	 * @throws IOException if the stream ends early
+	 */
+	static void readRow(DataInputStream in, boolean[] row, int c) throws IOException {
+		for (int start = 0; start < c; start += Long.SIZE) {
+			long word = in.readLong();
+			int end = Math.min(c, start + Long.SIZE);
+			for (int j = start; j < end; j++) {
+				row[j] = (word & (1L << (j - start))) != 0;
+			}
+		}
+	}
+}
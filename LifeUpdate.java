@@ -3,10 +3,50 @@
  * Program that simulates organisms that inhabit an area
  * @author - Samantha J. Noggle
  **/
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 public class Life {
-	public static void main(String[] args) {
+
+	/** Number of generations to run when none is given. */
+	private static final int DEFAULT_GENERATIONS = 5;
+	/** Longest cycle to look for when none is given. */
+	private static final int DEFAULT_PERIOD = 8;
+	/** Number of metrics records that can wait to be written. */
+	private static final int METRICS_CAPACITY = 4096;
+	/** Generations between checkpoints when no interval is given. */
+	private static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+	/** Number of boards that can wait to be drawn in pipeline mode. */
+	private static final int PIPELINE_DEPTH = 4;
+	/** Rows in each independently seeded block of getMatrixParallel. */
+	private static final int SEED_BLOCK_ROWS = 64;
+
+	/**
+	 * Reads the board size, seed and rule from standard input and runs the game.
+	 * 
+	 * Optional arguments of the form name=value change how long it runs:
+	 * generations=N stops after N more generations (counted from the saved
+	 * generation when resuming), and period=K stops early once the board
+	 * repeats itself with a period of at most K generations.
+	 * metrics=FILE writes one line of metrics per generation to FILE, as NDJSON
+	 * if its name ends in .ndjson or .json and as CSV otherwise.
+	 * checkpoint=FILE saves the board to FILE every N generations, where N is
+	 * given by every=N, and resume=FILE continues a saved game instead of
+	 * reading a new one from standard input. pipeline=block or pipeline=drop
+	 * draws boards on a separate thread, either waiting for it or skipping
+	 * boards when it falls behind. pattern=FILE starts from an RLE pattern
+	 * instead of a random board, and export=FILE saves the last board as one.
+	 * interval=N draws only every Nth generation, headless=true draws nothing,
+	 * and viewport=TOP,LEFT,HEIGHT,WIDTH draws only that rectangle of the board.
+	 * 
+	 * @param args optional name=value settings
+	 * @throws IOException if the board cannot be written
+	 **/
+	public static void main(String[] args) throws IOException {
 		// Scanner
 		Scanner reader = new Scanner(System.in);
 
@@ -18,33 +58,161 @@ public class Life {
 		int maxbirth = 0;
 		int minsurvive = 0;
 		int maxsurvive = 0;
-		int count = 0;
+		long generations = option(args, "generations", DEFAULT_GENERATIONS);
+		if (generations < 0) {
+			throw new IllegalArgumentException("generations cannot be negative.");
+		}
+		int period = (int) option(args, "period", DEFAULT_PERIOD);
+		String checkpointFile = textOption(args, "checkpoint");
+		long checkpointEvery = option(args, "every", DEFAULT_CHECKPOINT_INTERVAL);
+		if (checkpointEvery < 1) {
+			throw new IllegalArgumentException("every must be at least 1.");
+		}
+		String resumeFile = textOption(args, "resume");
+		String patternFile = textOption(args, "pattern");
+		boolean[][] gameBoard;
+		LifeRule rule;
+		long startGeneration = 0;
+
+		if (resumeFile != null) {
+			// Pick up where a checkpoint left off instead of asking for input
+			LifeCheckpoint saved = LifeCheckpoint.read(Paths.get(resumeFile));
+			row = saved.getRows();
+			column = saved.getColumns();
+			rule = saved.getRule();
+			gameBoard = saved.getBoard();
+			startGeneration = saved.getGeneration();
+		} else if (patternFile != null) {
+			// Start from a known pattern, with an empty border around it
+			try (LifeRle pattern = LifeRle.open(Paths.get(patternFile))) {
+				row = pattern.getHeight() + 2;
+				column = pattern.getWidth() + 2;
+				rule = pattern.getRule();
+				gameBoard = pattern.readBoard();
+			}
+		} else {
+			// Input from user
+			row = reader.nextInt();
+			column = reader.nextInt();
+			seed = reader.nextLong();
+			minbirth = reader.nextInt();
+			maxbirth = reader.nextInt();
+			minsurvive = reader.nextInt();
+			maxsurvive = reader.nextInt();
 
-		// Input from user
-		row = reader.nextInt();
-		column = reader.nextInt();
-		seed = reader.nextLong();
-		minbirth = reader.nextInt();
-		maxbirth = reader.nextInt();
-		minsurvive = reader.nextInt();
-		maxsurvive = reader.nextInt();
+			// Create game board
+			gameBoard = getMatrix(row, column, seed);
+			rule = new LifeRule(minbirth, maxbirth, minsurvive, maxsurvive);
+		}
 
-		// Create game board
-		boolean[][] gameBoard = getMatrix(row, column, seed);
+		// Frames are built in one buffer and written to stdout in a single call,
+		// optionally on a separate thread while the next generation is computed
+		FileChannel stdout = new FileOutputStream(FileDescriptor.out).getChannel();
+		String pipeline = textOption(args, "pipeline");
+		LifeRenderer renderer;
+		if (pipeline != null) {
+			renderer = new PipelinedRenderer(stdout, PIPELINE_DEPTH,
+					PipelinedRenderer.Policy.valueOf(pipeline.toUpperCase()));
+		} else {
+			renderer = new LifeRenderer(stdout);
+		}
+		long interval = option(args, "interval", 1);
+		if (interval < 1 || interval > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("interval must be between 1 and " + Integer.MAX_VALUE + ".");
+		}
+		renderer.setInterval((int) interval);
+		renderer.setHeadless(Boolean.parseBoolean(textOption(args, "headless")));
+		String viewport = textOption(args, "viewport");
+		if (viewport != null) {
+			String[] bounds = viewport.split(",");
+			if (bounds.length != 4) {
+				throw new IllegalArgumentException("viewport must be TOP,LEFT,HEIGHT,WIDTH.");
+			}
+			renderer.setViewport(Integer.parseInt(bounds[0].trim()), Integer.parseInt(bounds[1].trim()),
+					Integer.parseInt(bounds[2].trim()), Integer.parseInt(bounds[3].trim()));
+		}
 
 		// print the original board before the game starts
-		printBoard(gameBoard, row, column);
+		renderer.render(gameBoard, row, column, startGeneration);
+
+		// Two preallocated boards that trade places every round
+		BufferedLife life = new BufferedLife(gameBoard, row, column, rule);
+		life.setGeneration(startGeneration);
+
+		// Send per-generation metrics to a file in the background, if asked to
+		RingBufferMetricsSink metrics = null;
+		String metricsFile = textOption(args, "metrics");
+		if (metricsFile != null) {
+			metrics = new RingBufferMetricsSink(Paths.get(metricsFile), METRICS_CAPACITY);
+			life.setMetricsSink(metrics);
+		}
+
+		// Remember recent generations so a settled board can stop early; the
+		// engine keeps the board's hash up to date as it steps
+		CycleDetector detector = new CycleDetector(row, column, period);
+		life.setHashing(true);
+		detector.observe(life.getBoard(), null, life.getHash(), life.getGeneration());
 
 		// Go through one round of the game at a time
-		while (count < 5) {
-			gameBoard = gameRound(gameBoard, row, column, minbirth, maxbirth, minsurvive, maxsurvive);
-			count++;
+		long lastGeneration = startGeneration + generations;
+		while (life.getGeneration() < lastGeneration && !detector.isStable()) {
+			life.step();
+			renderer.render(life.getBoard(), row, column, life.getGeneration());
+			detector.observe(life.getBoard(), life.getPreviousBoard(), life.getHash(), life.getGeneration());
+
+			// Save the board every so often so a crashed run can be resumed
+			if (checkpointFile != null && life.getGeneration() % checkpointEvery == 0) {
+				LifeCheckpoint.write(Paths.get(checkpointFile), life.getBoard(), row, column, rule,
+						life.getGeneration());
+			}
+		}
+
+		renderer.finish();
+		String exportFile = textOption(args, "export");
+		if (exportFile != null) {
+			LifeRle.write(Paths.get(exportFile), life.getBoard(), row, column, rule);
+		}
+		if (detector.isStable()) {
+			System.out.println("Stable at generation " + detector.getStableGeneration() + " with period "
+					+ detector.getPeriod());
+		}
+		if (metrics != null) {
+			metrics.close();
 		}
 
 		// Close scanner because Eclipse is angry
 		reader.close();
 	}// end main
 
+	/**
+	 * Finds a name=value setting among the command-line arguments.
+	 * 
+	 * @param args         the command-line arguments
+	 * @param name         the name of the setting
+	 * @param defaultValue the value to use if the setting is not given
+	 * @return the value of the setting
+	 **/
+	public static long option(String[] args, String name, long defaultValue) {
+		String value = textOption(args, name);
+		return value == null ? defaultValue : Long.parseLong(value);
+	}
+
+	/**
+	 * Finds a name=value setting among the command-line arguments.
+	 * 
+	 * @param args the command-line arguments
+	 * @param name the name of the setting
+	 * @return the value of the setting, or null if it is not given
+	 **/
+	public static String textOption(String[] args, String name) {
+		for (String arg : args) {
+			if (arg.startsWith(name + "=")) {
+				return arg.substring(name.length() + 1);
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Constructs & fills the initial game board with random values.
 	 *
@@ -56,7 +224,21 @@ public class Life {
 	 **/
 	public static boolean[][] getMatrix(int r, int c, long s) {
 		boolean[][] gameBoard = new boolean[r][c];
+		fillMatrix(gameBoard, r, c, s);
+		return gameBoard;
+	}
 
+	/**
+	 * Fills an existing game board with the same random values getMatrix would
+	 * produce, so that boards can be reused from one game to the next.
+	 *
+	 * @param gameBoard array to fill, with at least r rows and c columns
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param s         random seed
+	 * 
+	 **/
+	public static void fillMatrix(boolean[][] gameBoard, int r, int c, long s) {
 		// Fill array with false
 		for (int i = 0; i < r; i++) {
 			for (int j = 0; j < c; j++) {
@@ -74,10 +256,88 @@ public class Life {
 				gameBoard[i][j] = rand.nextBoolean();
 			}
 		}
+	}
 
+	/**
+	 * Constructs & fills a game board with random values using several threads.
+	 * 
+	 * The rows are split into blocks of a fixed size, and every block draws from
+	 * its own SplittableRandom, split in block order from one seeded with s, so
+	 * the blocks' streams are independent of each other. The board is therefore
+	 * the same for a given seed no matter how many threads fill it, although it
+	 * is not the same board getMatrix makes. Rows are allocated by the thread
+	 * that fills them and start out false, so there is no separate pass to clear
+	 * them.
+	 * 
+	 * @param r       number of rows
+	 * @param c       number of columns
+	 * @param s       random seed
+	 * @param threads number of threads to use, which must be positive
+	 * @return the new game board
+	 * 
+	 **/
+	public static boolean[][] getMatrixParallel(int r, int c, long s, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Need at least one thread.");
+		}
+		boolean[][] gameBoard = new boolean[r][];
+		int blocks = (r + SEED_BLOCK_ROWS - 1) / SEED_BLOCK_ROWS;
+
+		// Every block gets its own stream, split off in block order so the order
+		// blocks are filled in does not matter
+		SplittableRandom root = new SplittableRandom(s);
+		SplittableRandom[] streams = new SplittableRandom[blocks];
+		for (int block = 0; block < blocks; block++) {
+			streams[block] = root.split();
+		}
+
+		if (threads == 1) {
+			for (int block = 0; block < blocks; block++) {
+				fillBlock(gameBoard, r, c, streams[block], block);
+			}
+		} else {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				// A parallel stream started inside the pool runs on the pool's threads
+				pool.submit(() -> IntStream.range(0, blocks).parallel()
+						.forEach(block -> fillBlock(gameBoard, r, c, streams[block], block))).join();
+			} finally {
+				pool.shutdown();
+			}
+		}
 		return gameBoard;
 	}
 
+	/**
+	 * Allocates & fills one block of rows for getMatrixParallel.
+	 * 
+	 * @param gameBoard array of the game board, whose rows are being created
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param rand      the block's own random numbers
+	 * @param block     which block of rows to fill
+	 **/
+	private static void fillBlock(boolean[][] gameBoard, int r, int c, SplittableRandom rand, int block) {
+		int firstRow = block * SEED_BLOCK_ROWS;
+		int lastRow = Math.min(r, firstRow + SEED_BLOCK_ROWS);
+
+		for (int i = firstRow; i < lastRow; i++) {
+			boolean[] row = new boolean[c];
+			if (i > 0 && i < r - 1) {
+				// Use all 64 bits of each random number instead of one per call
+				long bits = 0;
+				for (int j = 1; j < c - 1; j++) {
+					if (((j - 1) & 63) == 0) {
+						bits = rand.nextLong();
+					}
+					row[j] = (bits & 1) != 0;
+					bits >>>= 1;
+				}
+			}
+			gameBoard[i] = row;
+		}
+	}
+
 	/**
 	 * Prints out the game board.
 	 * 
@@ -135,8 +395,31 @@ public class Life {
 	 * @return the current updated board
 	 **/
 	public static boolean[][] gameRound(boolean[][] gameBoard, int r, int c, int minB, int maxB, int minS, int maxS) {
+		return gameRound(gameBoard, r, c, minB, maxB, minS, maxS, null, 0);
+	}
+
+	/**
+	 * Completes one iteration of the game, printing the updated board when
+	 * finished and reporting what happened to a metrics sink.
+	 * 
+	 * @param r          number of rows
+	 * @param c          number of columns
+	 * @param gameBoard  array of the game board
+	 * @param minB       minimum number of neighbors necessary for a birth
+	 * @param maxB       maximum number of neighbors allowable for a birth
+	 * @param minS       minimum number of neighbors for survival
+	 * @param maxS       maximum number of neighbors for survival
+	 * @param sink       where the metrics of this round go, or null for none
+	 * @param generation the number of the generation this round produces
+	 * @return the current updated board
+	 **/
+	public static boolean[][] gameRound(boolean[][] gameBoard, int r, int c, int minB, int maxB, int minS, int maxS,
+			LifeMetricsSink sink, long generation) {
 		// Variables
 		int neighborCount = 0;
+		long births = 0;
+		long deaths = 0;
+		long start = System.nanoTime();
 
 		// Copy board at the start of the turn
 		boolean[][] frozenBoard = copyBoard(gameBoard, r, c);
@@ -193,6 +476,7 @@ public class Life {
 				if (frozenBoard[i][j] == true) {
 					if (neighborCount > maxS || neighborCount < minS) {
 						gameBoard[i][j] = false;
+						deaths++;
 					}
 					else {
 						gameBoard[i][j] = true;
@@ -201,6 +485,7 @@ public class Life {
 				if (frozenBoard[i][j] == false) {
 					if (neighborCount >= minB && neighborCount <= maxB) {
 						gameBoard[i][j] = true;
+						births++;
 					} 
 					else {
 						gameBoard[i][j] = false;
@@ -209,9 +494,36 @@ public class Life {
 			}
 		}
 
+		// Report the round before printing, so the time is only the computation
+		if (sink != null) {
+			long elapsed = System.nanoTime() - start;
+			sink.record(generation, population(gameBoard, r, c), births, deaths, elapsed,
+					(long) Math.max(0, r - 2) * Math.max(0, c - 2));
+		}
+
 		// Print board at the end of turn
 		printBoard(gameBoard, r, c);
 
 		return gameBoard;
 	}
+
+	/**
+	 * Counts the organisms on the game board.
+	 * 
+	 * @param gameBoard array of the game board
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @return the number of occupied cells
+	 **/
+	public static long population(boolean[][] gameBoard, int r, int c) {
+		long population = 0;
+		for (int i = 0; i < r; i++) {
+			for (int j = 0; j < c; j++) {
+				if (gameBoard[i][j]) {
+					population++;
+				}
+			}
+		}
+		return population;
+	}
 }
\ No newline at end of file
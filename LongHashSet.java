@@ -0,0 +1,264 @@
+import java.util.Arrays;
+
+/**
+ * A set of long values stored in a single array, without boxing.
+ *
+ * The table uses open addressing with linear probing, and Long.MIN_VALUE marks
+ * empty slots. Long.MIN_VALUE itself is kept in a flag instead, and shows up as
+ * one extra slot after the table. Values are visited by slot index: every slot
+ * from 0 to capacity() - 1 either holds a value (isUsed) or is empty.
+ *
+ * The table doubles when it is more than half full, and shrinks when it is
+ * less than an eighth full, so visiting every slot costs time in proportion to
+ * the number of values rather than to the most the set has ever held.
+ */
+public class LongHashSet {
+
+	/** The value that marks an empty slot. */
+	private static final long FREE = Long.MIN_VALUE;
+	/** The smallest table size. */
+	private static final int MIN_CAPACITY = 16;
+
+	/** The slots of the table, FREE where nothing is stored. */
+	private long[] slots;
+	/** The number of values in the table, not counting FREE. */
+	private int used;
+	/** Whether the set contains the value FREE. */
+	private boolean hasFree;
+
+	/**
+	 * Constructs a new, empty set.
+	 */
+	public LongHashSet() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Constructs a new, empty set with room for some number of values.
+	 *
+	 * @param expected the number of values expected
+	 */
+	public LongHashSet(int expected) {
+		slots = new long[tableSize(expected)];
+		Arrays.fill(slots, FREE);
+	}
+
+	/**
+	 * Finds a power-of-two table size that keeps the table at most half full.
+	 *
+	 * @param expected the number of values expected
+	 * @return the table size
+	 */
+	static int tableSize(int expected) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < expected * 2) {
+			capacity *= 2;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Spreads the bits of a value across the whole word.
+	 *
+	 * @param value the value to hash
+	 * @return a well-mixed hash of the value
+	 */
+	static int hash(long value) {
+		long h = value * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Checks whether a table has become so empty that it should shrink.
+	 *
+	 * @param used     the number of values in the table
+	 * @param capacity the table size
+	 * @return true if the table is larger than needed and under an eighth full
+	 */
+	static boolean isSparse(int used, int capacity) {
+		return capacity > MIN_CAPACITY && used < capacity / 8;
+	}
+
+	/**
+	 * Adds a value to the set.
+	 *
+	 * @param value the value to add
+	 * @return true if the value was not already in the set
+	 */
+	public boolean add(long value) {
+		if (value == FREE) {
+			boolean added = !hasFree;
+			hasFree = true;
+			return added;
+		}
+		int mask = slots.length - 1;
+		int index = hash(value) & mask;
+		while (slots[index] != FREE) {
+			if (slots[index] == value) {
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+		slots[index] = value;
+		used++;
+		if (used * 2 > slots.length) {
+			rehash(slots.length * 2);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a value is in the set.
+	 *
+	 * @param value the value to look for
+	 * @return true if the set contains the value
+	 */
+	public boolean contains(long value) {
+		if (value == FREE) {
+			return hasFree;
+		}
+		int mask = slots.length - 1;
+		int index = hash(value) & mask;
+		while (slots[index] != FREE) {
+			if (slots[index] == value) {
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes a value from the set, if it is there.
+	 *
+	 * @param value the value to remove
+	 * @return true if the set contained the value
+	 */
+	public boolean remove(long value) {
+		if (value == FREE) {
+			boolean removed = hasFree;
+			hasFree = false;
+			return removed;
+		}
+		int mask = slots.length - 1;
+		int index = hash(value) & mask;
+		while (slots[index] != value) {
+			if (slots[index] == FREE) {
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+
+		// Shift later values of the same run back so that no probe sequence has a gap
+		int gap = index;
+		int scan = (index + 1) & mask;
+		while (slots[scan] != FREE) {
+			int home = hash(slots[scan]) & mask;
+			if (((scan - home) & mask) >= ((scan - gap) & mask)) {
+				slots[gap] = slots[scan];
+				gap = scan;
+			}
+			scan = (scan + 1) & mask;
+		}
+		slots[gap] = FREE;
+		used--;
+		if (isSparse(used, slots.length)) {
+			rehash(tableSize(used));
+		}
+		return true;
+	}
+
+	/**
+	 * Moves every value into a table of a different size.
+	 *
+	 * @param capacity the new table size, a power of two
+	 */
+	private void rehash(int capacity) {
+		long[] old = slots;
+		slots = new long[capacity];
+		Arrays.fill(slots, FREE);
+		int mask = capacity - 1;
+		for (long value : old) {
+			if (value != FREE) {
+				int index = hash(value) & mask;
+				while (slots[index] != FREE) {
+					index = (index + 1) & mask;
+				}
+				slots[index] = value;
+			}
+		}
+	}
+
+	/**
+	 * Removes every value. The table is kept for reuse, unless it was under an
+	 * eighth full, in which case a smaller one sized for the same number of
+	 * values replaces it.
+	 */
+	public void clear() {
+		if (isSparse(used, slots.length)) {
+			slots = new long[tableSize(used)];
+		}
+		Arrays.fill(slots, FREE);
+		used = 0;
+		hasFree = false;
+	}
+
+	/**
+	 * Gets the number of values in the set.
+	 *
+	 * @return the size of the set
+	 */
+	public int size() {
+		return hasFree ? used + 1 : used;
+	}
+
+	/**
+	 * Gets the number of slots, for visiting values by index.
+	 *
+	 * @return the number of slots in the table, plus one for Long.MIN_VALUE
+	 */
+	public int capacity() {
+		return slots.length + 1;
+	}
+
+	/**
+	 * Checks whether a slot holds a value.
+	 *
+	 * @param slot an index from 0 to capacity() - 1
+	 * @return true if the slot holds a value
+	 */
+	public boolean isUsed(int slot) {
+		return slot == slots.length ? hasFree : slots[slot] != FREE;
+	}
+
+	/**
+	 * Gets the value in a slot.
+	 *
+	 * @param slot an index of a used slot
+	 * @return the value stored there
+	 */
+	public long valueAt(int slot) {
+		return slot == slots.length ? FREE : slots[slot];
+	}
+
+	/**
+	 * Copies every value in the set into an array.
+	 *
+	 * @return a new array of the values, in no particular order
+	 */
+	public long[] toArray() {
+		long[] values = new long[size()];
+		int index = 0;
+		if (hasFree) {
+			values[index] = FREE;
+			index++;
+		}
+		for (long value : slots) {
+			if (value != FREE) {
+				values[index] = value;
+				index++;
+			}
+		}
+		return values;
+	}
+}
@@ -0,0 +1,178 @@
+import java.util.Arrays;
+
+/**
+ * A map from long keys to int counts stored in two parallel arrays, without
+ * boxing.
+ *
+ * The table uses open addressing with linear probing, and grows and shrinks,
+ * the same way LongHashSet does. Long.MIN_VALUE marks empty slots, so the entry
+ * for that key is kept in separate fields and shows up as one extra slot after
+ * the table. Entries are visited by slot index: every slot from 0 to
+ * capacity() - 1 either holds an entry (isUsed) or is empty.
+ */
+public class LongIntHashMap {
+
+	/** The key that marks an empty slot. */
+	private static final long FREE = Long.MIN_VALUE;
+
+	/** The keys of the table, FREE where nothing is stored. */
+	private long[] keys;
+	/** The value stored with each key. */
+	private int[] values;
+	/** The number of entries in the table, not counting the key FREE. */
+	private int used;
+	/** Whether the map has an entry for the key FREE. */
+	private boolean hasFree;
+	/** The value stored with the key FREE. */
+	private int freeValue;
+
+	/**
+	 * Constructs a new, empty map with room for some number of entries.
+	 *
+	 * @param expected the number of entries expected
+	 */
+	public LongIntHashMap(int expected) {
+		int capacity = LongHashSet.tableSize(expected);
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, FREE);
+	}
+
+	/**
+	 * Adds to the value stored with a key, starting from 0 if there is none.
+	 *
+	 * @param key    the key
+	 * @param amount the amount to add
+	 */
+	public void add(long key, int amount) {
+		if (key == FREE) {
+			freeValue = hasFree ? freeValue + amount : amount;
+			hasFree = true;
+			return;
+		}
+		int mask = keys.length - 1;
+		int index = LongHashSet.hash(key) & mask;
+		while (keys[index] != FREE) {
+			if (keys[index] == key) {
+				values[index] += amount;
+				return;
+			}
+			index = (index + 1) & mask;
+		}
+		keys[index] = key;
+		values[index] = amount;
+		used++;
+		if (used * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+	}
+
+	/**
+	 * Gets the value stored with a key.
+	 *
+	 * @param key the key
+	 * @return the value, or 0 if the key has no entry
+	 */
+	public int get(long key) {
+		if (key == FREE) {
+			return hasFree ? freeValue : 0;
+		}
+		int mask = keys.length - 1;
+		int index = LongHashSet.hash(key) & mask;
+		while (keys[index] != FREE) {
+			if (keys[index] == key) {
+				return values[index];
+			}
+			index = (index + 1) & mask;
+		}
+		return 0;
+	}
+
+	/**
+	 * Moves every entry into a table of a different size.
+	 *
+	 * @param capacity the new table size, a power of two
+	 */
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, FREE);
+		int mask = capacity - 1;
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			if (oldKeys[slot] != FREE) {
+				int index = LongHashSet.hash(oldKeys[slot]) & mask;
+				while (keys[index] != FREE) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = oldKeys[slot];
+				values[index] = oldValues[slot];
+			}
+		}
+	}
+
+	/**
+	 * Removes every entry. The table is kept for reuse, unless it was under an
+	 * eighth full, in which case a smaller one sized for the same number of
+	 * entries replaces it.
+	 */
+	public void clear() {
+		if (LongHashSet.isSparse(used, keys.length)) {
+			int capacity = LongHashSet.tableSize(used);
+			keys = new long[capacity];
+			values = new int[capacity];
+		}
+		Arrays.fill(keys, FREE);
+		used = 0;
+		hasFree = false;
+	}
+
+	/**
+	 * Gets the number of entries in the map.
+	 *
+	 * @return the size of the map
+	 */
+	public int size() {
+		return hasFree ? used + 1 : used;
+	}
+
+	/**
+	 * Gets the number of slots, for visiting entries by index.
+	 *
+	 * @return the number of slots in the table, plus one for Long.MIN_VALUE
+	 */
+	public int capacity() {
+		return keys.length + 1;
+	}
+
+	/**
+	 * Checks whether a slot holds an entry.
+	 *
+	 * @param slot an index from 0 to capacity() - 1
+	 * @return true if the slot holds an entry
+	 */
+	public boolean isUsed(int slot) {
+		return slot == keys.length ? hasFree : keys[slot] != FREE;
+	}
+
+	/**
+	 * Gets the key in a slot.
+	 *
+	 * @param slot an index of a used slot
+	 * @return the key stored there
+	 */
+	public long keyAt(int slot) {
+		return slot == keys.length ? FREE : keys[slot];
+	}
+
+	/**
+	 * Gets the value in a slot.
+	 *
+	 * @param slot an index of a used slot
+	 * @return the value stored there
+	 */
+	public int valueAt(int slot) {
+		return slot == keys.length ? freeValue : values[slot];
+	}
+}
@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A renderer that writes frames on its own thread, so the game can compute the
+ * next generation while the last one is being written.
+ *
+ * The game's thread copies each board it wants drawn into a recycled frame and
+ * puts it on a bounded queue; the writer thread draws the frame and hands it
+ * back. When every frame is in use, the game either waits for the writer
+ * (BLOCK) or skips drawing that generation (DROP).
+ */
+public class PipelinedRenderer extends LifeRenderer {
+
+	/** What to do when the writer falls behind. */
+	public enum Policy {
+		/** Wait for the writer, so every requested frame is drawn. */
+		BLOCK,
+		/** Skip the frame, so the game never waits. */
+		DROP
+	}
+
+	/**
+	 * A copy of one generation waiting to be drawn.
+	 */
+	private static class Frame {
+
+		/** The copied board, or null for the frame that stops the writer. */
+		private boolean[][] board;
+		/** The number of rows in use. */
+		private int rows;
+		/** The number of columns in use. */
+		private int columns;
+		/** The number of the generation. */
+		private long generation;
+	}
+
+	/** Frames that are free to be filled. */
+	private final BlockingQueue<Frame> free;
+	/** Frames waiting to be drawn, in order. */
+	private final BlockingQueue<Frame> ready;
+	/** What to do when no frame is free. */
+	private final Policy policy;
+	/** The thread that draws frames. */
+	private final Thread writer;
+
+	/** The number of frames skipped because the writer was behind. */
+	private volatile long dropped;
+	/** The first error the writer ran into, if any. */
+	private volatile Throwable failure;
+
+	/**
+	 * Constructs a pipelined renderer and starts its writer thread.
+	 *
+	 * @param channel where frames are written
+	 * @param depth   the number of frames that can be waiting at once, which must
+	 *                be positive
+	 * @param policy  what to do when the writer falls behind
+	 */
+	public PipelinedRenderer(WritableByteChannel channel, int depth, Policy policy) {
+		super(channel);
+		if (depth < 1) {
+			throw new IllegalArgumentException("The pipeline must hold at least one frame.");
+		}
+		this.policy = policy;
+		free = new ArrayBlockingQueue<Frame>(depth);
+		ready = new ArrayBlockingQueue<Frame>(depth + 1);
+		for (int i = 0; i < depth; i++) {
+			free.add(new Frame());
+		}
+
+		writer = new Thread(this::drain, "life-renderer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public boolean render(boolean[][] gameBoard, int r, int c, long generation) throws IOException {
+		Frame frame = claim(generation, r, c);
+		if (frame == null) {
+			return false;
+		}
+		for (int i = 0; i < r; i++) {
+			System.arraycopy(gameBoard[i], 0, frame.board[i], 0, c);
+		}
+		publish(frame, r, c, generation);
+		return true;
+	}
+
+	@Override
+	public boolean render(LifeEngine engine) throws IOException {
+		int r = engine.getRows();
+		int c = engine.getColumns();
+		Frame frame = claim(engine.getGeneration(), r, c);
+		if (frame == null) {
+			return false;
+		}
+		for (int i = 0; i < r; i++) {
+			for (int j = 0; j < c; j++) {
+				frame.board[i][j] = engine.isAlive(i, j);
+			}
+		}
+		publish(frame, r, c, engine.getGeneration());
+		return true;
+	}
+
+	/**
+	 * Gets a free frame, big enough for the board, for a generation that should
+	 * be drawn.
+	 *
+	 * @param generation the number of the generation
+	 * @param r          number of rows
+	 * @param c          number of columns
+	 * @return a free frame, or null if the generation is skipped
+	 * @throws IOException if the writer has failed (an unchecked exception or
+	 *                     error the writer ran into is rethrown as it is)
+	 */
+	private Frame claim(long generation, int r, int c) throws IOException {
+		rethrowFailure();
+		if (!shouldRender(generation)) {
+			return null;
+		}
+		Frame frame;
+		if (policy == Policy.DROP) {
+			frame = free.poll();
+			if (frame == null) {
+				dropped++;
+			}
+		} else {
+			try {
+				frame = free.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for the renderer.", e);
+			}
+		}
+		// Frames are only reallocated when the board grows
+		if (frame != null && (frame.board == null || frame.board.length < r || (r > 0 && frame.board[0].length < c))) {
+			frame.board = new boolean[r][c];
+		}
+		return frame;
+	}
+
+	/**
+	 * Queues a filled frame for drawing.
+	 *
+	 * @param frame      the frame
+	 * @param r          number of rows
+	 * @param c          number of columns
+	 * @param generation the number of the generation
+	 */
+	private void publish(Frame frame, int r, int c, long generation) {
+		frame.rows = r;
+		frame.columns = c;
+		frame.generation = generation;
+		ready.add(frame);
+	}
+
+	/**
+	 * Draws frames as they arrive until the stop frame is seen.
+	 */
+	private void drain() {
+		try {
+			while (true) {
+				Frame frame = ready.take();
+				if (frame.board == null) {
+					break;
+				}
+				try {
+					if (failure == null) {
+						super.render(frame.board, frame.rows, frame.columns, frame.generation);
+					}
+				} catch (IOException | RuntimeException | Error e) {
+					failure = e;
+				} finally {
+					// Always hand the frame back, or a blocked game would wait forever
+					free.add(frame);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Throws the first error the writer ran into, if there was one, on the
+	 * game's thread.
+	 *
+	 * @throws IOException if a frame could not be written
+	 */
+	private void rethrowFailure() throws IOException {
+		Throwable error = failure;
+		if (error instanceof IOException) {
+			throw (IOException) error;
+		} else if (error instanceof RuntimeException) {
+			throw (RuntimeException) error;
+		} else if (error instanceof Error) {
+			throw (Error) error;
+		}
+	}
+
+	/**
+	 * Accessor for the number of skipped frames.
+	 *
+	 * @return the number of frames dropped because the writer was behind
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * Waits for every queued frame to be written and stops the writer thread.
+	 *
+	 * @throws IOException if a frame could not be written
+	 */
+	@Override
+	public void finish() throws IOException {
+		ready.add(new Frame());
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		rethrowFailure();
+	}
+}
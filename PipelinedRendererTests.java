@@ -0,0 +1,141 @@
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.junit.FixMethodOrder;
+
+/*
+ * You must include the Junit4 library to use this test unit.
+ *
+ * To add it, select the project and then choose Properties... from the File menu.
+ * Click on "Java Build Path" in the panel at the left.
+ * Select Libraries from the list at the top.
+ * Select Add Library... from the right side of the panel.
+ * Select JUnit and click on Next.
+ * Change the version to JUnit 4 and click on Finish.
+ * Click on OK in the properties panel.
+ *
+ * You can then run these tests using "Run As JUnit Test" instead of "Runs As Java Application".
+ */
+
+/**
+ * JUnit tests for PipelinedRenderer.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PipelinedRendererTests {
+
+	/** Frames each test tries to draw, more than the pipeline holds. */
+	private static final int FRAMES = 20;
+
+	/**
+	 * A channel that counts the bytes written to it, or fails on a chosen write.
+	 */
+	private static class TestChannel implements WritableByteChannel {
+
+		/** The number of bytes written. */
+		private long written;
+		/** The number of writes before the failing one, or -1 to never fail. */
+		private int failAfter;
+		/** What the failing write throws. */
+		private boolean unchecked;
+
+		/**
+		 * Creates a channel.
+		 *
+		 * @param failAfter the number of writes that succeed, or -1 for all of them
+		 * @param unchecked true to fail with an IllegalStateException instead of an
+		 *                  IOException
+		 */
+		TestChannel(int failAfter, boolean unchecked) {
+			this.failAfter = failAfter;
+			this.unchecked = unchecked;
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			if (failAfter == 0) {
+				if (unchecked) {
+					throw new IllegalStateException("unchecked failure");
+				}
+				throw new IOException("checked failure");
+			}
+			failAfter--;
+			int n = src.remaining();
+			src.position(src.limit());
+			written += n;
+			return n;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * Draws FRAMES frames and finishes, returning the first exception thrown.
+	 *
+	 * @param renderer the renderer
+	 * @return the exception, or null if every call succeeded
+	 */
+	private static Throwable drawAll(PipelinedRenderer renderer) {
+		boolean[][] board = new boolean[4][5];
+		board[1][2] = true;
+		try {
+			for (int g = 0; g < FRAMES; g++) {
+				renderer.render(board, 4, 5, g);
+			}
+			renderer.finish();
+		} catch (IOException | RuntimeException e) {
+			return e;
+		}
+		return null;
+	}
+
+	/**
+	 * Checks that every frame is written when nothing goes wrong.
+	 */
+	@Test(timeout = 10000)
+	public void test01WritesEveryFrame() {
+		TestChannel channel = new TestChannel(-1, false);
+		PipelinedRenderer renderer = new PipelinedRenderer(channel, 2, PipelinedRenderer.Policy.BLOCK);
+		assertEquals("A frame failed.", null, drawAll(renderer));
+		assertEquals("Frames went missing.", FRAMES, renderer.getFramesWritten());
+		assertEquals("Wrong number of bytes.", FRAMES * (4 * (5 * 2 + System.lineSeparator().length())
+				+ System.lineSeparator().length()), channel.written);
+	}
+
+	/**
+	 * Checks that a write error reaches the game's thread.
+	 */
+	@Test(timeout = 10000)
+	public void test02IOExceptionIsReported() {
+		PipelinedRenderer renderer = new PipelinedRenderer(new TestChannel(3, false), 1,
+				PipelinedRenderer.Policy.BLOCK);
+		Throwable thrown = drawAll(renderer);
+		assertTrue("The write error was lost.", thrown instanceof IOException);
+	}
+
+	/**
+	 * Checks that an unchecked exception on the writer thread neither loses the
+	 * frame (which would leave a blocking game waiting forever) nor goes
+	 * unreported.
+	 */
+	@Test(timeout = 10000)
+	public void test03UncheckedExceptionIsReported() {
+		PipelinedRenderer renderer = new PipelinedRenderer(new TestChannel(3, true), 1,
+				PipelinedRenderer.Policy.BLOCK);
+		Throwable thrown = drawAll(renderer);
+		assertTrue("The unchecked error was lost.", thrown instanceof IllegalStateException);
+	}
+}
@@ -0,0 +1,216 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A metrics sink that hands records to a background thread through a lock-free
+ * ring buffer, and the background thread writes them to a CSV or NDJSON file.
+ *
+ * The ring has a single producer (the thread running the game) and a single
+ * consumer (the writer thread). The producer never blocks: when the ring is
+ * full the record is dropped and counted instead, so a slow disk cannot slow
+ * down the simulation.
+ */
+public class RingBufferMetricsSink implements LifeMetricsSink, AutoCloseable {
+
+	/** The number of values in one record. */
+	private static final int FIELDS = 6;
+	/** The names of the values in one record, in order. */
+	private static final String[] NAMES = { "generation", "population", "births", "deaths", "stepNanos",
+			"cellsEvaluated" };
+	/** How long the writer thread sleeps when the ring is empty. */
+	private static final long IDLE_NANOS = 1000000;
+
+	/** The output formats. */
+	public enum Format {
+		/** Comma-separated values with a header line. */
+		CSV,
+		/** One JSON object per line. */
+		NDJSON
+	}
+
+	/** The values of every slot, FIELDS per slot. */
+	private final long[] slots;
+	/** The number of slots minus one (the number of slots is a power of two). */
+	private final int mask;
+	/** The number of records ever written into the ring. */
+	private final AtomicLong head = new AtomicLong();
+	/** The number of records ever taken out of the ring. */
+	private final AtomicLong tail = new AtomicLong();
+	/** The number of records dropped because the ring was full. */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/** Where the records end up. */
+	private final Writer writer;
+	/** How the records are written. */
+	private final Format format;
+	/** The thread that drains the ring. */
+	private final Thread drainer;
+	/** Set when no more records will arrive. */
+	private volatile boolean closed;
+	/** The first error the writer thread ran into, if any. */
+	private volatile IOException failure;
+
+	/**
+	 * Constructs a sink that writes to a file, choosing NDJSON for files ending
+	 * in .ndjson or .json and CSV otherwise.
+	 *
+	 * @param file     the file to write
+	 * @param capacity the number of records the ring can hold
+	 * @throws IOException if the file cannot be created
+	 */
+	public RingBufferMetricsSink(Path file, int capacity) throws IOException {
+		this(Files.newBufferedWriter(file), formatOf(file), capacity);
+	}
+
+	/**
+	 * Constructs a sink that writes to a Writer.
+	 *
+	 * @param writer   where the records end up; it is closed with the sink
+	 * @param format   how the records are written
+	 * @param capacity the number of records the ring can hold, rounded up to a
+	 *                 power of two
+	 */
+	public RingBufferMetricsSink(Writer writer, Format format, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The ring must hold at least one record.");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size *= 2;
+		}
+		slots = new long[size * FIELDS];
+		mask = size - 1;
+		this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+		this.format = format;
+
+		drainer = new Thread(this::drain, "life-metrics");
+		drainer.setDaemon(true);
+		drainer.start();
+	}
+
+	/**
+	 * Picks a format from a file name.
+	 *
+	 * @param file the file
+	 * @return NDJSON for .ndjson and .json files, CSV otherwise
+	 */
+	private static Format formatOf(Path file) {
+		String name = file.getFileName().toString().toLowerCase();
+		return name.endsWith(".ndjson") || name.endsWith(".json") ? Format.NDJSON : Format.CSV;
+	}
+
+	@Override
+	public void record(long generation, long population, long births, long deaths, long stepNanos,
+			long cellsEvaluated) {
+		long position = head.get();
+		if (position - tail.get() > mask) {
+			dropped.incrementAndGet();
+			return;
+		}
+		int base = (int) (position & mask) * FIELDS;
+		slots[base] = generation;
+		slots[base + 1] = population;
+		slots[base + 2] = births;
+		slots[base + 3] = deaths;
+		slots[base + 4] = stepNanos;
+		slots[base + 5] = cellsEvaluated;
+		// Publish the slot only after it is filled in
+		head.lazySet(position + 1);
+	}
+
+	/**
+	 * Takes records out of the ring and writes them until the sink is closed.
+	 */
+	private void drain() {
+		try {
+			if (format == Format.CSV) {
+				writer.write(String.join(",", NAMES));
+				writer.write(System.lineSeparator());
+			}
+			while (true) {
+				boolean finished = closed;
+				long position = tail.get();
+				long available = head.get();
+				if (position == available) {
+					if (finished) {
+						break;
+					}
+					writer.flush();
+					LockSupport.parkNanos(IDLE_NANOS);
+					continue;
+				}
+				for (; position < available; position++) {
+					writeRecord((int) (position & mask) * FIELDS);
+					tail.lazySet(position + 1);
+				}
+			}
+			writer.flush();
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * Writes the record in one slot.
+	 *
+	 * @param base the index of the slot's first value
+	 * @throws IOException if the writer fails
+	 */
+	private void writeRecord(int base) throws IOException {
+		if (format == Format.CSV) {
+			for (int field = 0; field < FIELDS; field++) {
+				if (field > 0) {
+					writer.write(',');
+				}
+				writer.write(Long.toString(slots[base + field]));
+			}
+		} else {
+			writer.write('{');
+			for (int field = 0; field < FIELDS; field++) {
+				if (field > 0) {
+					writer.write(',');
+				}
+				writer.write('"');
+				writer.write(NAMES[field]);
+				writer.write("\":");
+				writer.write(Long.toString(slots[base + field]));
+			}
+			writer.write('}');
+		}
+		writer.write(System.lineSeparator());
+	}
+
+	/**
+	 * Accessor for the number of lost records.
+	 *
+	 * @return the number of records dropped because the ring was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Writes every remaining record, stops the writer thread and closes the
+	 * output.
+	 *
+	 * @throws IOException if any record could not be written
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		try {
+			drainer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		writer.close();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,332 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one game of Life across several worker processes, for boards too big
+ * for a single heap.
+ *
+ * The interior rows of the board are split into horizontal bands, and each
+ * band is owned by a LifeShardWorker process started on this machine. The
+ * workers build their bands from the seed themselves, so the whole board never
+ * exists in one place, and swap one-row halos with their neighbours over
+ * loopback TCP after every generation. This coordinator only tells the workers
+ * how far to run and adds up the population, births and deaths they report.
+ * The result is the same, cell for cell, as running BufferedLife on
+ * Life.getMatrix with the same seed.
+ */
+public class ShardedLife implements AutoCloseable {
+
+	/** Number of generations to run when none is given. */
+	private static final int DEFAULT_GENERATIONS = 100;
+	/** Number of workers to start when none is given. */
+	private static final int DEFAULT_SHARDS = 4;
+	/** Number of records the metrics sink can hold before it drops them. */
+	private static final int METRICS_CAPACITY = 4096;
+	/** How long to wait for the workers to start or stop, in milliseconds. */
+	private static final int WORKER_TIMEOUT = 60000;
+
+	/** The number of rows on the board. */
+	private int rows;
+	/** The number of columns on the board. */
+	private int columns;
+	/** The number of worker processes. */
+	private int shards;
+
+	/** The worker processes, from the top band down. */
+	private Process[] workers;
+	/** The connection to each worker. */
+	private Socket[] sockets;
+	/** Results from each worker. */
+	private DataInputStream[] inputs;
+	/** Commands to each worker. */
+	private DataOutputStream[] outputs;
+
+	/** The number of generations computed so far. */
+	private long generation;
+	/** The number of occupied cells. */
+	private long population;
+	/** Where per-generation metrics go, or null when they are not wanted. */
+	private LifeMetricsSink metrics;
+
+	/**
+	 * Starts the workers and has them build the board Life.getMatrix would make.
+	 *
+	 * @param r      number of rows
+	 * @param c      number of columns
+	 * @param s      random seed
+	 * @param rule   the birth and survival ranges
+	 * @param shards the number of worker processes, at most the number of
+	 *               interior rows
+	 * @throws IOException if a worker cannot be started or reached
+	 */
+	public ShardedLife(int r, int c, long s, LifeRule rule, int shards) throws IOException {
+		if (shards < 1 || r - 2 < shards) {
+			throw new IllegalArgumentException("Every shard needs at least one interior row.");
+		}
+		this.rows = r;
+		this.columns = c;
+		this.shards = shards;
+		workers = new Process[shards];
+		sockets = new Socket[shards];
+		inputs = new DataInputStream[shards];
+		outputs = new DataOutputStream[shards];
+
+		try (ServerSocket listener = new ServerSocket(0, shards, InetAddress.getLoopbackAddress())) {
+			listener.setSoTimeout(WORKER_TIMEOUT);
+			for (int k = 0; k < shards; k++) {
+				workers[k] = spawn(listener.getLocalPort());
+			}
+
+			// Workers are numbered in the order they call back
+			int[] ports = new int[shards];
+			for (int k = 0; k < shards; k++) {
+				sockets[k] = listener.accept();
+				sockets[k].setTcpNoDelay(true);
+				inputs[k] = LifeShardWorker.input(sockets[k]);
+				outputs[k] = LifeShardWorker.output(sockets[k]);
+				ports[k] = inputs[k].readInt();
+			}
+			for (int k = 0; k < shards; k++) {
+				DataOutputStream out = outputs[k];
+				out.writeInt(k);
+				out.writeInt(r);
+				out.writeInt(c);
+				out.writeLong(s);
+				out.writeInt(rule.getMinBirth());
+				out.writeInt(rule.getMaxBirth());
+				out.writeInt(rule.getMinSurvive());
+				out.writeInt(rule.getMaxSurvive());
+				out.writeInt(firstRow(k));
+				out.writeInt(firstRow(k + 1));
+				out.writeInt(k + 1 < shards ? ports[k + 1] : 0);
+				out.flush();
+			}
+			for (int k = 0; k < shards; k++) {
+				population += inputs[k].readLong();
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Starts one worker process on the same Java and class path as this one.
+	 *
+	 * @param port the port the worker should call back on
+	 * @return the process
+	 * @throws IOException if the process cannot be started
+	 */
+	private static Process spawn(int port) throws IOException {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				"LifeShardWorker", Integer.toString(port));
+		builder.inheritIO();
+		return builder.start();
+	}
+
+	/**
+	 * Finds where a worker's band starts.
+	 *
+	 * @param k the position of the worker, or the number of workers to find
+	 *          where the last band ends
+	 * @return the first row of the band
+	 */
+	private int firstRow(int k) {
+		return 1 + (int) ((long) k * (rows - 2) / shards);
+	}
+
+	/**
+	 * Sets where per-generation metrics are reported, summed over every worker.
+	 * The time reported for a step is that of the slowest worker.
+	 *
+	 * @param sink the sink, or null to stop reporting
+	 */
+	public void setMetricsSink(LifeMetricsSink sink) {
+		metrics = sink;
+	}
+
+	/**
+	 * Computes the next generation.
+	 *
+	 * @throws IOException if a worker cannot be reached
+	 */
+	public void step() throws IOException {
+		advance(1);
+	}
+
+	/**
+	 * Computes several generations. The workers run them without waiting for
+	 * the coordinator in between.
+	 *
+	 * @param generations the number of generations to compute
+	 * @throws IOException if a worker cannot be reached
+	 */
+	public void advance(long generations) throws IOException {
+		for (DataOutputStream out : outputs) {
+			out.writeInt(LifeShardWorker.STEP);
+			out.writeLong(generations);
+			out.flush();
+		}
+		long cellsEvaluated = (long) (rows - 2) * Math.max(0, columns - 2);
+		for (long g = 0; g < generations; g++) {
+			long total = 0;
+			long births = 0;
+			long deaths = 0;
+			long slowest = 0;
+			for (DataInputStream in : inputs) {
+				total += in.readLong();
+				births += in.readLong();
+				deaths += in.readLong();
+				slowest = Math.max(slowest, in.readLong());
+			}
+			population = total;
+			generation++;
+			if (metrics != null) {
+				metrics.record(generation, population, births, deaths, slowest, cellsEvaluated);
+			}
+		}
+	}
+
+	/**
+	 * Copies the whole board back from the workers. Only useful when the board
+	 * fits in this process, for example to check the result.
+	 *
+	 * @return a new array holding the current generation
+	 * @throws IOException if a worker cannot be reached
+	 */
+	public boolean[][] gather() throws IOException {
+		for (DataOutputStream out : outputs) {
+			out.writeInt(LifeShardWorker.GATHER);
+			out.flush();
+		}
+		boolean[][] gameBoard = new boolean[rows][columns];
+		for (int k = 0; k < shards; k++) {
+			for (int i = firstRow(k); i < firstRow(k + 1); i++) {
+				LifeShardWorker.readRow(inputs[k], gameBoard[i], columns);
+			}
+		}
+		return gameBoard;
+	}
+
+	/**
+	 * Accessor for the generation.
+	 *
+	 * @return the number of generations computed so far
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Accessor for the population.
+	 *
+	 * @return the number of occupied cells
+	 */
+	public long getPopulation() {
+		return population;
+	}
+
+	/**
+	 * Accessor for the number of workers.
+	 *
+	 * @return the number of worker processes
+	 */
+	public int getShards() {
+		return shards;
+	}
+
+	/**
+	 * Tells the workers to stop and waits for them, killing any that do not
+	 * exit in time.
+	 */
+	@Override
+	public void close() {
+		for (int k = 0; k < shards; k++) {
+			try {
+				if (outputs[k] != null) {
+					outputs[k].writeInt(LifeShardWorker.STOP);
+					outputs[k].flush();
+				}
+				if (sockets[k] != null) {
+					sockets[k].close();
+				}
+			} catch (IOException e) {
+				// the worker is already gone
+			}
+		}
+		for (Process worker : workers) {
+			if (worker == null) {
+				continue;
+			}
+			try {
+				if (!worker.waitFor(WORKER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+					worker.destroyForcibly();
+				}
+			} catch (InterruptedException e) {
+				worker.destroyForcibly();
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Runs a sharded game and prints its final population.
+	 *
+	 * @param args rows, columns, seed, minB, maxB, minS and maxS, then optional
+	 *             generations=N, shards=N, metrics=FILE and verify=true settings;
+	 *             verify=true also runs the game in this process and checks that
+	 *             both boards are identical
+	 * @throws IOException if a worker cannot be reached or the metrics file
+	 *                     cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 7) {
+			System.err.println("Usage: java ShardedLife rows columns seed minB maxB minS maxS"
+					+ " [generations=N] [shards=N] [metrics=FILE] [verify=true]");
+			return;
+		}
+		int r = Integer.parseInt(args[0]);
+		int c = Integer.parseInt(args[1]);
+		long s = Long.parseLong(args[2]);
+		LifeRule rule = new LifeRule(Integer.parseInt(args[3]), Integer.parseInt(args[4]),
+				Integer.parseInt(args[5]), Integer.parseInt(args[6]));
+		long generations = Life.option(args, "generations", DEFAULT_GENERATIONS);
+		int shards = (int) Life.option(args, "shards", DEFAULT_SHARDS);
+		String metricsFile = Life.textOption(args, "metrics");
+		boolean verify = Boolean.parseBoolean(Life.textOption(args, "verify"));
+
+		try (RingBufferMetricsSink sink = metricsFile == null ? null
+				: new RingBufferMetricsSink(Paths.get(metricsFile), METRICS_CAPACITY);
+				ShardedLife life = new ShardedLife(r, c, s, rule, shards)) {
+			life.setMetricsSink(sink);
+			long start = System.nanoTime();
+			life.advance(generations);
+			long elapsed = (System.nanoTime() - start) / 1000000;
+			System.out.println("Generation " + life.getGeneration() + " population " + life.getPopulation()
+					+ " (" + shards + " workers, " + elapsed + " ms)");
+
+			if (verify) {
+				BufferedLife single = new BufferedLife(Life.getMatrix(r, c, s), r, c, rule);
+				while (single.getGeneration() < generations) {
+					single.step();
+				}
+				boolean[][] expected = single.getBoard();
+				boolean[][] actual = life.gather();
+				for (int i = 0; i < r; i++) {
+					if (!Arrays.equals(expected[i], actual[i])) {
+						throw new IllegalStateException("Row " + i + " differs from the single-process engine.");
+					}
+				}
+				System.out.println("Matches the single-process engine.");
+			}
+		}
+	}
+}
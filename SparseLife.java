@@ -0,0 +1,202 @@
+/**
+ * A Life engine for an unbounded universe that stores only the occupied cells.
+ *
+ * Unlike Life.gameRound there is no fixed border, so patterns can grow in any
+ * direction. Each cell is packed into one long (row in the high half, column in
+ * the low half). Every step adds one to the count of each cell in the 3x3
+ * neighborhood of each occupied cell, in a primitive map, and then applies the
+ * rule to every counted cell. Memory and time therefore depend on the
+ * population, not on the area the pattern covers.
+ *
+ * Rows and columns run over every int, and wrap around at the ends of the int
+ * range.
+ */
+public class SparseLife {
+
+	/** The birth and survival ranges. */
+	private LifeRule rule;
+	/** The occupied cells of the current generation. */
+	private LongHashSet alive;
+	/** The set the next generation is collected into. */
+	private LongHashSet nextAlive;
+	/** The neighbor count of every cell next to an occupied cell. */
+	private LongIntHashMap counts;
+	/** The number of generations computed so far. */
+	private long generation;
+
+	/**
+	 * Constructs an empty universe.
+	 *
+	 * @param rule the birth and survival ranges, which may not allow a birth with
+	 *             0 neighbors (that would fill the whole universe)
+	 */
+	public SparseLife(LifeRule rule) {
+		if ((rule.getBirthMask() & 1) != 0) {
+			throw new IllegalArgumentException("A sparse universe cannot have births with no neighbors.");
+		}
+		this.rule = rule;
+		alive = new LongHashSet();
+		nextAlive = new LongHashSet();
+		counts = new LongIntHashMap(16);
+	}
+
+	/**
+	 * Constructs a universe holding the occupied cells of an existing game board,
+	 * at the same coordinates.
+	 *
+	 * @param gameBoard array of the game board, as made by Life.getMatrix
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param rule      the birth and survival ranges
+	 */
+	public SparseLife(boolean[][] gameBoard, int r, int c, LifeRule rule) {
+		this(rule);
+		for (int i = 0; i < r; i++) {
+			for (int j = 0; j < c; j++) {
+				if (gameBoard[i][j]) {
+					alive.add(key(i, j));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Packs a cell's coordinates into one long.
+	 *
+	 * @param row    the row of the cell
+	 * @param column the column of the cell
+	 * @return the key for the cell
+	 */
+	public static long key(int row, int column) {
+		return ((long) row << 32) | (column & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Unpacks the row from a cell's key.
+	 *
+	 * @param key the key for the cell
+	 * @return the row of the cell
+	 */
+	public static int rowOf(long key) {
+		return (int) (key >> 32);
+	}
+
+	/**
+	 * Unpacks the column from a cell's key.
+	 *
+	 * @param key the key for the cell
+	 * @return the column of the cell
+	 */
+	public static int columnOf(long key) {
+		return (int) key;
+	}
+
+	/**
+	 * Sets the state of one cell.
+	 *
+	 * @param row    the row of the cell
+	 * @param column the column of the cell
+	 * @param state  whether the cell should be occupied
+	 */
+	public void set(int row, int column, boolean state) {
+		if (state) {
+			alive.add(key(row, column));
+		} else {
+			alive.remove(key(row, column));
+		}
+	}
+
+	/**
+	 * Checks whether a cell is occupied.
+	 *
+	 * @param row    the row of the cell
+	 * @param column the column of the cell
+	 * @return true if the cell is occupied
+	 */
+	public boolean isAlive(int row, int column) {
+		return alive.contains(key(row, column));
+	}
+
+	/**
+	 * Advances the universe by one generation.
+	 */
+	public void step() {
+		counts.clear();
+		for (int slot = 0; slot < alive.capacity(); slot++) {
+			if (!alive.isUsed(slot)) {
+				continue;
+			}
+			long cell = alive.valueAt(slot);
+			int row = rowOf(cell);
+			int column = columnOf(cell);
+			for (int di = -1; di <= 1; di++) {
+				for (int dj = -1; dj <= 1; dj++) {
+					counts.add(key(row + di, column + dj), 1);
+				}
+			}
+		}
+
+		nextAlive.clear();
+		for (int slot = 0; slot < counts.capacity(); slot++) {
+			if (counts.isUsed(slot)) {
+				long cell = counts.keyAt(slot);
+				if (rule.nextState(alive.contains(cell), counts.valueAt(slot))) {
+					nextAlive.add(cell);
+				}
+			}
+		}
+
+		LongHashSet temp = alive;
+		alive = nextAlive;
+		nextAlive = temp;
+		generation++;
+	}
+
+	/**
+	 * Accessor for the number of generations computed so far.
+	 *
+	 * @return the number of calls to step since the universe was created
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Counts the occupied cells.
+	 *
+	 * @return the live population
+	 */
+	public long getPopulation() {
+		return alive.size();
+	}
+
+	/**
+	 * Lists the occupied cells.
+	 *
+	 * @return a new array of cell keys, in no particular order
+	 */
+	public long[] getLiveCells() {
+		return alive.toArray();
+	}
+
+	/**
+	 * Copies a rectangle of the universe.
+	 *
+	 * @param top    the first row of the rectangle
+	 * @param left   the first column of the rectangle
+	 * @param height the number of rows in the rectangle
+	 * @param width  the number of columns in the rectangle
+	 * @return a new array where element [i][j] is cell (top + i, left + j)
+	 */
+	public boolean[][] getRegion(int top, int left, int height, int width) {
+		boolean[][] region = new boolean[height][width];
+		for (long cell : alive.toArray()) {
+			long i = (long) rowOf(cell) - top;
+			long j = (long) columnOf(cell) - left;
+			if (i >= 0 && i < height && j >= 0 && j < width) {
+				region[(int) i][(int) j] = true;
+			}
+		}
+		return region;
+	}
+}
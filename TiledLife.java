@@ -0,0 +1,242 @@
+/**
+ * A Life engine that splits the board into square tiles and only recomputes
+ * the tiles that could have changed.
+ *
+ * A cell can only change if something in its 3x3 neighborhood changed in the
+ * previous generation, so a tile is recomputed only when it or one of the
+ * eight tiles around it changed. Like BufferedLife, the engine swaps two
+ * boards; a tile that is skipped already holds the right values in the other
+ * board, because it did not change between the previous generation and this
+ * one.
+ */
+public class TiledLife implements LifeEngine {
+
+	/** The tile size used when none is given. */
+	public static final int DEFAULT_TILE_SIZE = 32;
+
+	/** The number of rows on the board. */
+	private int rows;
+	/** The number of columns on the board. */
+	private int columns;
+	/** The birth and survival ranges, compiled into a lookup table. */
+	private boolean[] table;
+	/** The current generation. */
+	private boolean[][] current;
+	/** The buffer the next generation is written into. */
+	private boolean[][] next;
+	/** The number of generations computed so far. */
+	private long generation;
+
+	/** The number of cells on each side of a tile. */
+	private int tileSize;
+	/** The number of rows of tiles. */
+	private int tileRows;
+	/** The number of columns of tiles. */
+	private int tileColumns;
+	/** Which tiles changed in the last generation. */
+	private boolean[][] changed;
+	/** Which tiles change in the generation being computed. */
+	private boolean[][] changing;
+
+	/** The number of tiles recomputed in the last generation. */
+	private int tilesProcessed;
+	/** The number of tiles skipped in the last generation. */
+	private int tilesSkipped;
+
+	/**
+	 * Constructs an engine holding a copy of an existing game board.
+	 *
+	 * @param gameBoard array of the game board, as made by Life.getMatrix
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param rule      the birth and survival ranges
+	 */
+	public TiledLife(boolean[][] gameBoard, int r, int c, LifeRule rule) {
+		this(gameBoard, r, c, rule, DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Constructs an engine holding a copy of an existing game board.
+	 *
+	 * @param gameBoard array of the game board, as made by Life.getMatrix
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param rule      the birth and survival ranges
+	 * @param tileSize  the number of cells on each side of a tile, which must be
+	 *                  positive
+	 */
+	public TiledLife(boolean[][] gameBoard, int r, int c, LifeRule rule, int tileSize) {
+		if (tileSize < 1) {
+			throw new IllegalArgumentException("Tiles must hold at least one cell.");
+		}
+		rows = r;
+		columns = c;
+		table = rule.getTable();
+		this.tileSize = tileSize;
+		current = Life.copyBoard(gameBoard, r, c);
+		next = Life.copyBoard(gameBoard, r, c);
+
+		tileRows = (r + tileSize - 1) / tileSize;
+		tileColumns = (c + tileSize - 1) / tileSize;
+		changed = new boolean[tileRows][tileColumns];
+		changing = new boolean[tileRows][tileColumns];
+
+		// Nothing is known about the first generation, so every tile starts dirty
+		for (int ti = 0; ti < tileRows; ti++) {
+			for (int tj = 0; tj < tileColumns; tj++) {
+				changed[ti][tj] = true;
+			}
+		}
+	}
+
+	@Override
+	public void step() {
+		tilesProcessed = 0;
+		tilesSkipped = 0;
+
+		for (int ti = 0; ti < tileRows; ti++) {
+			for (int tj = 0; tj < tileColumns; tj++) {
+				if (nearChange(ti, tj)) {
+					changing[ti][tj] = stepTile(ti, tj);
+					tilesProcessed++;
+				} else {
+					changing[ti][tj] = false;
+					tilesSkipped++;
+				}
+			}
+		}
+
+		boolean[][] temp = current;
+		current = next;
+		next = temp;
+		temp = changed;
+		changed = changing;
+		changing = temp;
+		generation++;
+	}
+
+	/**
+	 * Checks whether a tile or any tile touching it changed in the last
+	 * generation.
+	 *
+	 * @param ti the row of the tile
+	 * @param tj the column of the tile
+	 * @return true if the tile needs to be recomputed
+	 */
+	private boolean nearChange(int ti, int tj) {
+		for (int i = Math.max(0, ti - 1); i <= Math.min(tileRows - 1, ti + 1); i++) {
+			for (int j = Math.max(0, tj - 1); j <= Math.min(tileColumns - 1, tj + 1); j++) {
+				if (changed[i][j]) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Computes the next generation of the interior cells in one tile.
+	 *
+	 * @param ti the row of the tile
+	 * @param tj the column of the tile
+	 * @return true if any cell in the tile changed
+	 */
+	private boolean stepTile(int ti, int tj) {
+		int fromRow = Math.max(1, ti * tileSize);
+		int toRow = Math.min(rows - 1, (ti + 1) * tileSize);
+		int fromColumn = Math.max(1, tj * tileSize);
+		int toColumn = Math.min(columns - 1, (tj + 1) * tileSize);
+		boolean anyChange = false;
+
+		// A tile with no interior columns (as on a board under three columns
+		// wide) has nothing to compute, and the window could not start inside it
+		if (fromColumn >= toColumn) {
+			return false;
+		}
+
+		for (int i = fromRow; i < toRow; i++) {
+			boolean[] above = current[i - 1];
+			boolean[] same = current[i];
+			boolean[] below = current[i + 1];
+			boolean[] target = next[i];
+
+			int pattern = (LifeRule.columnBits(above, same, below, fromColumn - 1) << 1)
+					| LifeRule.columnBits(above, same, below, fromColumn);
+			for (int j = fromColumn; j < toColumn; j++) {
+				pattern = ((pattern << 1) & LifeRule.SHIFT_MASK) | LifeRule.columnBits(above, same, below, j + 1);
+				boolean alive = table[pattern];
+				target[j] = alive;
+				if (alive != same[j]) {
+					anyChange = true;
+				}
+			}
+		}
+		return anyChange;
+	}
+
+	/**
+	 * Accessor for the amount of work done in the last generation.
+	 *
+	 * @return the number of tiles recomputed by the last call to step
+	 */
+	public int getTilesProcessed() {
+		return tilesProcessed;
+	}
+
+	/**
+	 * Accessor for the amount of work avoided in the last generation.
+	 *
+	 * @return the number of tiles skipped by the last call to step
+	 */
+	public int getTilesSkipped() {
+		return tilesSkipped;
+	}
+
+	/**
+	 * Gets the current generation without copying it.
+	 *
+	 * @return the board holding the current generation, which is overwritten by
+	 *         the step after next
+	 */
+	public boolean[][] getBoard() {
+		return current;
+	}
+
+	@Override
+	public boolean isAlive(int row, int column) {
+		return current[row][column];
+	}
+
+	@Override
+	public int getRows() {
+		return rows;
+	}
+
+	@Override
+	public int getColumns() {
+		return columns;
+	}
+
+	@Override
+	public long getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public long getPopulation() {
+		long population = 0;
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				if (current[i][j]) {
+					population++;
+				}
+			}
+		}
+		return population;
+	}
+
+	@Override
+	public boolean[][] toMatrix() {
+		return Life.copyBoard(current, rows, columns);
+	}
+}
@@ -0,0 +1,184 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * This class uses the incubating Vector API. To compile and run it, add the
+ * module to both javac and java:
+ *
+ *   --add-modules jdk.incubator.vector
+ *
+ * Use LifeEngines.vectorized to create one; it falls back to BufferedLife when
+ * the module is not available.
+ */
+
+/**
+ * A Life engine that stores one byte per cell and computes the neighbor counts
+ * of many cells per instruction with the Java Vector API.
+ *
+ * Each step adds the nine shifted rows of a cell's neighborhood as byte
+ * vectors, then applies the birth and survival ranges with vector compares and
+ * masks. Cells past the last full vector of a row are finished with the scalar
+ * lookup table.
+ */
+public class VectorLife implements LifeEngine {
+
+	/** The widest byte vector the hardware supports well. */
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+	/** The most cells a board can have, since each is a byte in one array. */
+	public static final long MAX_CELLS = Integer.MAX_VALUE - 8;
+
+	/** The number of rows on the board. */
+	private int rows;
+	/** The number of columns on the board. */
+	private int columns;
+	/** The current generation, row-major, 1 for occupied and 0 for empty. */
+	private byte[] cells;
+	/** The buffer the next generation is written into. */
+	private byte[] next;
+	/** The birth and survival ranges, compiled into a lookup table. */
+	private boolean[] table;
+	/** Minimum number of neighbors necessary for a birth. */
+	private byte minBirth;
+	/** Maximum number of neighbors allowable for a birth. */
+	private byte maxBirth;
+	/** Minimum number of neighbors for survival. */
+	private byte minSurvive;
+	/** Maximum number of neighbors for survival. */
+	private byte maxSurvive;
+	/** The number of generations computed so far. */
+	private long generation;
+
+	/**
+	 * Constructs an engine holding a copy of an existing game board.
+	 *
+	 * @param gameBoard array of the game board, as made by Life.getMatrix
+	 * @param r         number of rows
+	 * @param c         number of columns
+	 * @param rule      the birth and survival ranges
+	 * @throws IllegalArgumentException if the board has more than MAX_CELLS
+	 *                                  cells
+	 */
+	public VectorLife(boolean[][] gameBoard, int r, int c, LifeRule rule) {
+		long size = (long) r * c;
+		if (size > MAX_CELLS) {
+			throw new IllegalArgumentException("A board of " + r + " by " + c
+					+ " cells is too large for VectorLife; use BufferedLife instead.");
+		}
+		rows = r;
+		columns = c;
+		cells = new byte[(int) size];
+		next = new byte[(int) size];
+		table = rule.getTable();
+		minBirth = clamp(rule.getMinBirth());
+		maxBirth = clamp(rule.getMaxBirth());
+		minSurvive = clamp(rule.getMinSurvive());
+		maxSurvive = clamp(rule.getMaxSurvive());
+
+		for (int i = 0; i < r; i++) {
+			for (int j = 0; j < c; j++) {
+				cells[i * c + j] = (byte) (gameBoard[i][j] ? 1 : 0);
+			}
+		}
+		System.arraycopy(cells, 0, next, 0, cells.length);
+	}
+
+	/**
+	 * Brings a range limit into the range of a byte without changing which
+	 * counts it allows.
+	 *
+	 * @param limit a minimum or maximum neighbor count
+	 * @return the same limit, clamped to just outside 0 to 9
+	 */
+	private static byte clamp(int limit) {
+		return (byte) Math.max(-1, Math.min(LifeRule.MAX_COUNT + 1, limit));
+	}
+
+	@Override
+	public void step() {
+		int lanes = SPECIES.length();
+		ByteVector zero = ByteVector.zero(SPECIES);
+
+		for (int i = 1; i < rows - 1; i++) {
+			int above = (i - 1) * columns;
+			int same = i * columns;
+			int below = (i + 1) * columns;
+
+			int j = 1;
+			for (; j + lanes <= columns - 1; j += lanes) {
+				ByteVector self = ByteVector.fromArray(SPECIES, cells, same + j);
+				ByteVector neighborCount = self.add(ByteVector.fromArray(SPECIES, cells, same + j - 1))
+						.add(ByteVector.fromArray(SPECIES, cells, same + j + 1))
+						.add(ByteVector.fromArray(SPECIES, cells, above + j - 1))
+						.add(ByteVector.fromArray(SPECIES, cells, above + j))
+						.add(ByteVector.fromArray(SPECIES, cells, above + j + 1))
+						.add(ByteVector.fromArray(SPECIES, cells, below + j - 1))
+						.add(ByteVector.fromArray(SPECIES, cells, below + j))
+						.add(ByteVector.fromArray(SPECIES, cells, below + j + 1));
+
+				VectorMask<Byte> alive = self.compare(VectorOperators.NE, (byte) 0);
+				VectorMask<Byte> born = neighborCount.compare(VectorOperators.GE, minBirth)
+						.and(neighborCount.compare(VectorOperators.LE, maxBirth)).andNot(alive);
+				VectorMask<Byte> survived = neighborCount.compare(VectorOperators.GE, minSurvive)
+						.and(neighborCount.compare(VectorOperators.LE, maxSurvive)).and(alive);
+				zero.blend((byte) 1, born.or(survived)).intoArray(next, same + j);
+			}
+
+			// Finish the row one cell at a time
+			for (; j < columns - 1; j++) {
+				int pattern = 0;
+				for (int dj = -1; dj <= 1; dj++) {
+					pattern = (pattern << 1) & LifeRule.SHIFT_MASK;
+					pattern |= (cells[above + j + dj] << 6) | (cells[same + j + dj] << 3) | cells[below + j + dj];
+				}
+				next[same + j] = (byte) (table[pattern] ? 1 : 0);
+			}
+		}
+
+		byte[] temp = cells;
+		cells = next;
+		next = temp;
+		generation++;
+	}
+
+	@Override
+	public boolean isAlive(int row, int column) {
+		return cells[row * columns + column] != 0;
+	}
+
+	@Override
+	public int getRows() {
+		return rows;
+	}
+
+	@Override
+	public int getColumns() {
+		return columns;
+	}
+
+	@Override
+	public long getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public long getPopulation() {
+		long population = 0;
+		for (byte cell : cells) {
+			population += cell;
+		}
+		return population;
+	}
+
+	@Override
+	public boolean[][] toMatrix() {
+		boolean[][] gameBoard = new boolean[rows][columns];
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				gameBoard[i][j] = cells[i * columns + j] != 0;
+			}
+		}
+		return gameBoard;
+	}
+}
@@ -0,0 +1,211 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Build the benchmarks with Maven from the benchmarks directory, which copies
+ * the tree sources into this package and runs JMH's annotation processor:
+ *
+ *   mvn package
+ *
+ * Then run this class to measure both trees at 1 to 32 threads:
+ *
+ *   java -cp target/benchmarks.jar benchmarks.ConcurrentBinarySearchTreeBenchmarks
+ *
+ * Results for each thread count are saved as bst-threads-N.json. Any other
+ * JMH options can be used by running the jar itself, for example:
+ *
+ *   java -jar target/benchmarks.jar ConcurrentBinarySearchTreeBenchmarks -t 8 -p readPercent=50
+ */
+
+/**
+ * JMH benchmarks comparing ConcurrentBinarySearchTree with a BinarySearchTree
+ * guarded by one global lock, which is how the tree was shared before.
+ *
+ * With readPercent chance an operation calls contains on a random key, and
+ * otherwise it adds a random key or removes one, with equal odds. Each thread
+ * removes only keys it added itself, oldest first, so every remove finds its
+ * key and does the full work of unlinking; a thread with nothing left to
+ * remove adds instead, and one holding REMEMBERED keys removes instead, so the
+ * tree stays within a few thousand elements of its starting size. The mix is
+ * read-heavy (95% reads) or write-heavy (50% reads), and main runs both at 1
+ * to 32 threads. The concurrent tree locks only the nodes a write changes, so
+ * both its reads and its writes should scale with threads where the locked
+ * tree's do not.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentBinarySearchTreeBenchmarks {
+
+	/** The thread counts main measures. */
+	private static final int[] THREADS = { 1, 2, 4, 8, 16, 32 };
+	/** Keys are drawn from 0 up to this. */
+	private static final int KEY_RANGE = 1 << 20;
+	/** The most added keys a thread remembers for removing later. */
+	private static final int REMEMBERED = 1024;
+
+	/** Which tree is measured: "concurrent" or "locked". */
+	@Param({ "concurrent", "locked" })
+	public String tree;
+
+	/** The percentage of operations that are reads. */
+	@Param({ "95", "50" })
+	public int readPercent;
+
+	/** The number of elements in the tree before measuring starts. */
+	@Param({ "1000000" })
+	public int initialSize;
+
+	/** The tree with per-node locks. */
+	private ConcurrentBinarySearchTree<Integer> concurrent;
+	/** The tree behind a global lock. */
+	private BinarySearchTree<Integer> locked;
+	/** The global lock. */
+	private Object lock;
+
+	/**
+	 * The random numbers and added keys of one benchmark thread.
+	 */
+	@State(Scope.Thread)
+	public static class ThreadState {
+
+		/** This thread's own generator, so threads do not contend on it. */
+		private SplittableRandom random = new SplittableRandom();
+		/** The keys this thread added and has not removed, as a ring. */
+		private int[] added = new int[REMEMBERED];
+		/** The index of the oldest key in added. */
+		private int oldest;
+		/** The number of keys in added. */
+		private int pending;
+
+		/**
+		 * Remembers a key this thread added.
+		 *
+		 * @param key the key
+		 */
+		private void remember(int key) {
+			added[(oldest + pending) % REMEMBERED] = key;
+			pending++;
+		}
+
+		/**
+		 * Takes the oldest key this thread added and has not removed.
+		 *
+		 * @return the key
+		 */
+		private int takeOldest() {
+			int key = added[oldest];
+			oldest = (oldest + 1) % REMEMBERED;
+			pending--;
+			return key;
+		}
+	}
+
+	/**
+	 * Fills the tree being measured with random keys.
+	 */
+	@Setup
+	public void setUp() {
+		concurrent = new ConcurrentBinarySearchTree<Integer>();
+		locked = new BinarySearchTree<Integer>(true);
+		lock = new Object();
+		SplittableRandom random = new SplittableRandom(42);
+		for (int i = 0; i < initialSize; i++) {
+			int key = random.nextInt(KEY_RANGE);
+			if (tree.equals("concurrent")) {
+				concurrent.add(key);
+			} else {
+				locked.add(key);
+			}
+		}
+	}
+
+	/**
+	 * Does one read or write, picked at random.
+	 *
+	 * @param local The calling thread's random numbers and added keys.
+	 * @return The result of the operation, so it is not optimized away.
+	 */
+	@Benchmark
+	public boolean mixed(ThreadState local) {
+		boolean read = local.random.nextInt(100) < readPercent;
+		// a separate draw, so adds and removes are equally likely in every mix
+		boolean add = local.random.nextBoolean();
+		if (local.pending == 0) {
+			add = true;
+		} else if (local.pending == REMEMBERED) {
+			add = false;
+		}
+		int key;
+		if (read || add) {
+			key = local.random.nextInt(KEY_RANGE);
+			if (!read) {
+				local.remember(key);
+			}
+		} else {
+			key = local.takeOldest();
+		}
+
+		if (tree.equals("concurrent")) {
+			if (read) {
+				return concurrent.contains(key);
+			} else if (add) {
+				concurrent.add(key);
+				return true;
+			} else {
+				return concurrent.remove(key);
+			}
+		}
+
+		synchronized (lock) {
+			if (read) {
+				return locked.contains(key);
+			} else if (add) {
+				locked.add(key);
+				return true;
+			} else {
+				return locked.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Runs the benchmarks at every thread count and saves the results as JSON.
+	 *
+	 * @param args not used
+	 * @throws RunnerException if JMH cannot run the benchmarks
+	 */
+	public static void main(String[] args) throws RunnerException {
+		for (int threads : THREADS) {
+			Options options = new OptionsBuilder()
+					.include(ConcurrentBinarySearchTreeBenchmarks.class.getSimpleName())
+					.threads(threads)
+					.resultFormat(ResultFormatType.JSON)
+					.result("bst-threads-" + threads + ".json")
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
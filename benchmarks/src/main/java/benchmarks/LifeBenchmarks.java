@@ -0,0 +1,302 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Build the benchmarks with Maven from the benchmarks directory, which copies
+ * the Life sources into this package and runs JMH's annotation processor:
+ *
+ *   mvn package
+ *
+ * Then run this class to measure everything and save the results as JSON:
+ *
+ *   java -cp target/benchmarks.jar benchmarks.LifeBenchmarks [results.json]
+ *
+ * Any other JMH options can be used by running the jar itself, for example
+ * -p size=4096 to measure a different board size. To compare the Vector API
+ * engine with the scalar one on large boards:
+ *
+ *   java -jar target/benchmarks.jar "LifeBenchmarks.(buffered|vector)Step" \
+ *       -p size=1024,4096,16384 -p density=0.5 -p rule="3 3 3 4"
+ *
+ * A 16384 by 16384 board is 256 MB of booleans, and each engine holds two
+ * more boards' worth, so only the engine being measured is built; the forked
+ * JVMs get -Xmx4g, which leaves room for the old engine while the next one is
+ * built.
+ */
+
+/**
+ * JMH benchmarks for the Life simulator.
+ *
+ * Each engine benchmark computes one generation, so the throughput JMH reports
+ * is generations per second. The original Life methods (gameRound, copyBoard,
+ * getMatrix and printBoard) are measured on their own, and drawing is measured
+ * separately from computing: gameRound still prints every generation, so its
+ * numbers include formatting, but the engine benchmarks never draw anything.
+ * Every benchmark runs at each combination of board size, density and rule,
+ * and the GC profiler adds the allocation rate of each one.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules=jdk.incubator.vector", "-Xmx4g" })
+@State(Scope.Thread)
+public class LifeBenchmarks {
+
+	/** The seed used for every board. */
+	private static final long SEED = 42;
+
+	/** The number of rows and columns on the board. */
+	@Param({ "64", "512", "2048" })
+	public int size;
+
+	/** The fraction of interior cells that start occupied. */
+	@Param({ "0.1", "0.5" })
+	public double density;
+
+	/**
+	 * The rule as "minB maxB minS maxS", counting the cell itself: standard
+	 * Life, a rule that grows more, and a rule that dies out quickly.
+	 */
+	@Param({ "3 3 3 4", "3 4 3 5", "4 4 4 5" })
+	public String rule;
+
+	/** The starting board. */
+	private boolean[][] start;
+	/** The rule being measured. */
+	private LifeRule lifeRule;
+	/** The board gameRound is working on. */
+	private boolean[][] board;
+
+	/** The double-buffered engine. */
+	private BufferedLife buffered;
+	/** The engine that packs 64 cells into a long. */
+	private BitPackedLife bitPacked;
+	/** The engine that skips tiles that are not changing. */
+	private TiledLife tiled;
+	/** The Vector API engine, or BufferedLife when the module is missing. */
+	private LifeEngine vector;
+	/** The memoized quadtree engine. */
+	private HashLife hash;
+	/** The engine that only stores occupied cells. */
+	private SparseLife sparse;
+
+	/** Draws frames into nothing. */
+	private LifeRenderer renderer;
+	/** Standard output, put back after the benchmarks that print. */
+	private PrintStream console;
+
+	/**
+	 * Builds the starting board and silences standard output, so printing costs
+	 * the same as formatting.
+	 */
+	@Setup(Level.Trial)
+	public void setUpTrial() {
+		String[] limits = rule.split(" ");
+		lifeRule = new LifeRule(Integer.parseInt(limits[0]), Integer.parseInt(limits[1]),
+				Integer.parseInt(limits[2]), Integer.parseInt(limits[3]));
+
+		start = new boolean[size][size];
+		Random rand = new Random(SEED);
+		for (int i = 1; i < size - 1; i++) {
+			for (int j = 1; j < size - 1; j++) {
+				start[i][j] = rand.nextDouble() < density;
+			}
+		}
+
+		renderer = new LifeRenderer(Channels.newChannel(OutputStream.nullOutputStream()));
+		console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	/**
+	 * Restarts the engine being measured from the starting board, so each
+	 * iteration measures the same generations instead of a board that has died
+	 * out. The other engines are not built, so large boards fit in memory.
+	 *
+	 * @param params which benchmark is running
+	 */
+	@Setup(Level.Iteration)
+	public void setUpIteration(BenchmarkParams params) {
+		String benchmark = params.getBenchmark();
+		switch (benchmark.substring(benchmark.lastIndexOf('.') + 1)) {
+		case "gameRound":
+			board = Life.copyBoard(start, size, size);
+			break;
+		case "bufferedStep":
+			if (buffered != null) {
+				buffered.shutdown();
+			}
+			buffered = new BufferedLife(start, size, size, lifeRule);
+			break;
+		case "bitPackedStep":
+			bitPacked = new BitPackedLife(start, size, size, lifeRule);
+			break;
+		case "tiledStep":
+			tiled = new TiledLife(start, size, size, lifeRule);
+			break;
+		case "vectorStep":
+			vector = LifeEngines.vectorized(start, size, size, lifeRule);
+			break;
+		case "hashLifeStep":
+			hash = new HashLife(start, size, size, lifeRule);
+			break;
+		case "sparseStep":
+			sparse = new SparseLife(start, size, size, lifeRule);
+			break;
+		default:
+			// The other benchmarks only read the starting board
+		}
+	}
+
+	/**
+	 * Puts standard output back.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.setOut(console);
+		if (buffered != null) {
+			buffered.shutdown();
+		}
+	}
+
+	/**
+	 * Runs one generation of the original implementation, printing included.
+	 */
+	@Benchmark
+	public boolean[][] gameRound() {
+		board = Life.gameRound(board, size, size, lifeRule.getMinBirth(), lifeRule.getMaxBirth(),
+				lifeRule.getMinSurvive(), lifeRule.getMaxSurvive());
+		return board;
+	}
+
+	/**
+	 * Copies a board the original way.
+	 */
+	@Benchmark
+	public boolean[][] copyBoard() {
+		return Life.copyBoard(start, size, size);
+	}
+
+	/**
+	 * Builds a random board the original way.
+	 */
+	@Benchmark
+	public boolean[][] getMatrix() {
+		return Life.getMatrix(size, size, SEED);
+	}
+
+	/**
+	 * Prints a board the original way, one cell at a time.
+	 */
+	@Benchmark
+	public void printBoard() {
+		Life.printBoard(start, size, size);
+	}
+
+	/**
+	 * Draws a board with LifeRenderer, for comparison with printBoard.
+	 */
+	@Benchmark
+	public boolean render() throws IOException {
+		return renderer.render(start, size, size, 0);
+	}
+
+	/**
+	 * Computes one generation with BufferedLife.
+	 */
+	@Benchmark
+	public LifeEngine bufferedStep() {
+		buffered.step();
+		return buffered;
+	}
+
+	/**
+	 * Computes one generation with BitPackedLife.
+	 */
+	@Benchmark
+	public LifeEngine bitPackedStep() {
+		bitPacked.step();
+		return bitPacked;
+	}
+
+	/**
+	 * Computes one generation with TiledLife.
+	 */
+	@Benchmark
+	public LifeEngine tiledStep() {
+		tiled.step();
+		return tiled;
+	}
+
+	/**
+	 * Computes one generation with VectorLife.
+	 */
+	@Benchmark
+	public LifeEngine vectorStep() {
+		vector.step();
+		return vector;
+	}
+
+	/**
+	 * Computes one generation with HashLife.
+	 */
+	@Benchmark
+	public LifeEngine hashLifeStep() {
+		hash.step();
+		return hash;
+	}
+
+	/**
+	 * Computes one generation with SparseLife.
+	 */
+	@Benchmark
+	public SparseLife sparseStep() {
+		sparse.step();
+		return sparse;
+	}
+
+	/**
+	 * Runs every benchmark with the GC profiler and saves the results as JSON.
+	 *
+	 * @param args the results file, life-benchmarks.json if not given
+	 * @throws RunnerException if JMH cannot run the benchmarks
+	 */
+	public static void main(String[] args) throws RunnerException {
+		String results = args.length > 0 ? args[0] : "life-benchmarks.json";
+		Options options = new OptionsBuilder()
+				.include(LifeBenchmarks.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(results)
+				.build();
+		new Runner(options).run();
+	}
+}